@@ -0,0 +1,43 @@
+package com.mercan.person.config;
+
+import com.github.benmanes.caffeine.jcache.CacheManagerImpl;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.Properties;
+
+/**
+ * Caches are Caffeine backed (size and TTL bounded, W-TinyLFU admission), see {@code spring.cache.caffeine.spec}.
+ * Hit, miss and eviction counts are published as {@code cache.gets} and {@code cache.evictions} metrics.
+ * The caching advice is ordered outside the transaction advice so evictions happen after commit; evicting
+ * before commit would let a concurrent read put the old state back into the cache.
+ * <p>
+ * Hibernate's second-level cache is Caffeine too, through JCache, with its regions bounded in {@code application.conf}.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+
+    /**
+     * A JCache manager of the application's own for the second-level cache. The provider hands out one manager per
+     * JVM, which would let persistence units on different databases read each other's entries.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager() {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        return new CacheManagerImpl(provider, provider.getDefaultURI(), provider.getDefaultClassLoader(), new Properties());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+}
@@ -0,0 +1,25 @@
+package com.mercan.person.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Lazy initialization, {@code spring.main.lazy-initialization=true} or the {@code fast-startup} profile, for
+ * instances that must serve soon after they start. Only beans off the request path are deferred: the application's
+ * own controllers, services and their dependencies, the persistence unit included, are still created on startup,
+ * so the first request does not pay for them.
+ * <p>
+ * The profile also skips schema generation for the prebuilt {@code db/schema.sql}. Build-time class-data sharing and a
+ * time-to-first-request benchmark come with the {@code startup} Maven profile.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.main.lazy-initialization", havingValue = "true")
+public class FastStartupConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter requestPathExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType.getName().startsWith("com.mercan.person.");
+    }
+}
@@ -0,0 +1,47 @@
+package com.mercan.person.config;
+
+import com.mercan.person.routing.ReplicaRoutingDataSource;
+import com.mercan.person.routing.ReplicaRoutingTransactionManager;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * JPA and R2DBC side by side on the same database. Spring Boot backs off from the JDBC data source once an R2DBC
+ * connection factory exists, so it is declared here from the usual {@code spring.datasource.*} properties. Each
+ * store also brings a transaction manager: the JPA one is primary, so {@code @Transactional} without a qualifier
+ * keeps meaning a JPA transaction, and the R2DBC one is only used through the reactive services'
+ * {@code TransactionalOperator}.
+ * <p>
+ * With replicas configured, see {@link ReplicaRoutingConfig}, the JPA transaction manager also routes each
+ * transaction to the primary or a replica.
+ */
+@Configuration
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class PersistenceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @Primary
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory,
+                                                         ObjectProvider<ReplicaRoutingDataSource> routingDataSource) {
+        if (routingDataSource.getIfAvailable() != null) {
+            return new ReplicaRoutingTransactionManager(entityManagerFactory);
+        }
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+}
@@ -0,0 +1,57 @@
+package com.mercan.person.config;
+
+import com.mercan.person.routing.ReadYourWritesFilter;
+import com.mercan.person.routing.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.mercan.person.constants.PersonServiceConstants.LOOKUP_PATH;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_PATH;
+
+/**
+ * Opt-in read replicas, {@code person.datasource.replica-urls}. Read-only transactions, which include every read
+ * through a repository outside a service transaction, go to the replicas; writes and the reconciliations of in-memory
+ * state go to the primary. Each replica gets a pool configured like the primary's, with the same credentials.
+ * <p>
+ * Replica reads are only as fresh as the replica, so what they load is kept out of the second-level, person and
+ * address caches, which only primary reads and writes fill. A client that wrote reads from the primary, or from those
+ * caches, for {@code person.datasource.read-your-writes-seconds}.
+ */
+@Configuration
+@ConditionalOnProperty("person.datasource.replica-urls")
+@Slf4j
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @Primary
+    public ReplicaRoutingDataSource routingDataSource(HikariDataSource dataSource,
+                                                      @Value("${person.datasource.replica-urls}") List<String> replicaUrls) {
+        List<HikariDataSource> replicas = new ArrayList<>(replicaUrls.size());
+        for (String replicaUrl : replicaUrls) {
+            HikariConfig config = new HikariConfig();
+            dataSource.copyStateTo(config);
+            config.setJdbcUrl(replicaUrl);
+            config.setPoolName("replica-" + replicas.size());
+            replicas.add(new HikariDataSource(config));
+        }
+        log.info("routing read-only transactions to {} replicas", replicas.size());
+        return new ReplicaRoutingDataSource(dataSource, replicas);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public ReadYourWritesFilter readYourWritesFilter(@Value("${person.datasource.read-your-writes-seconds}") int stickySeconds) {
+        return new ReadYourWritesFilter(stickySeconds, Collections.singleton(PERSON_PATH + LOOKUP_PATH));
+    }
+}
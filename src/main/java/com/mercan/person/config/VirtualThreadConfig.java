@@ -0,0 +1,40 @@
+package com.mercan.person.config;
+
+import com.mercan.person.util.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * Opt-in mode, {@code person.virtual-threads.enabled=true} or the {@code virtual-threads} profile, serving every
+ * request and every MVC async task on its own virtual thread instead of a bounded platform-thread pool. A request
+ * blocked on JDBC then parks a cheap virtual thread, so concurrency is bounded by the connection pool rather than by
+ * Tomcat's thread count. Needs JDK 21 at runtime; on older JDKs startup fails instead of silently falling back.
+ * <p>
+ * The embedded Tomcat must not hold a monitor while it processes a request, or every request's virtual thread stays
+ * pinned to its carrier while it waits on JDBC. Tomcat up to 9.0.43 does, in {@code SocketProcessorBase.run}, which
+ * is why the build pins a later 9.0.x that takes a lock there instead. Run with
+ * {@code -Djdk.tracePinnedThreads=short} to check a Tomcat version before changing it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "person.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        log.info("serving requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-vt-"));
+    }
+
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(VirtualThreads.newThreadPerTaskExecutor("task-vt-"));
+    }
+}
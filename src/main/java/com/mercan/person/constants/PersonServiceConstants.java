@@ -2,4 +2,48 @@ package com.mercan.person.constants;
 
 public class PersonServiceConstants {
     public static final String ERROR_MESSAGE_RESOURCE_NOT_FOUND = "Resource %s with id %s does not exist";
+    public static final String ERROR_MESSAGE_INVALID_CURSOR = "after: is not a valid cursor";
+    public static final String ERROR_MESSAGE_CURSOR_SORT = "after: is a cursor of a search sorted by %s";
+    public static final String ERROR_MESSAGE_INVALID_SORT = "sort: must be one of id, lastName, firstName";
+    public static final String ERROR_MESSAGE_INVALID_DIRECTION = "direction: must be asc or desc";
+    public static final String ERROR_MESSAGE_INVALID_MATCH = "match: must be trigram or phonetic";
+    public static final String ERROR_MESSAGE_INVALID_NAME_QUERY = "q: must not be blank";
+    public static final String ERROR_MESSAGE_INVALID_LIMIT = "limit: must be greater than 0";
+    public static final String ERROR_MESSAGE_BULK_SIZE = "people: must contain between 1 and %s items";
+    public static final String ERROR_MESSAGE_LOOKUP_IDS = "ids: must contain between 1 and %s ids, none of them empty";
+    public static final String ERROR_MESSAGE_PRECONDITION_FAILED = "Resource %s with id %s is not at version %s";
+    public static final String ERROR_MESSAGE_CONCURRENT_MODIFICATION = "Resource was modified concurrently, reload it and retry";
+    public static final String ERROR_MESSAGE_INVALID_IF_MATCH = "If-Match: must be a single entity tag";
+    public static final String ERROR_MESSAGE_WEAK_IF_MATCH = "If-Match: weak entity tags never match";
+    public static final String ERROR_MESSAGE_PATCH_NOT_OBJECT = "body: must be a JSON object";
+    public static final String ERROR_MESSAGE_PATCH_FIELD = "%s: cannot be patched";
+    public static final String ERROR_MESSAGE_PATCH_UNREADABLE = "body: %s";
+
+    public static final String PERSON_CACHE = "person";
+    public static final String ADDRESS_CACHE = "address";
+    public static final String READ_FROM_REPLICA = "T(com.mercan.person.routing.ReadRouting).readFromReplica()";
+
+    public static final String PERSON_REGION = "person-entity";
+    public static final String ADDRESS_REGION = "address-entity";
+    public static final String PERSON_ADDRESS_REGION = "person-address";
+    public static final String SCOPED_WRITE_SPACE = "scoped-write";
+
+    public static final String PERSON_SEQUENCE = "person_seq";
+    public static final String ADDRESS_SEQUENCE = "address_seq";
+    public static final String ID_ALLOCATION_SIZE_SETTING = "person.id.allocation-size";
+    public static final int DEFAULT_ID_ALLOCATION_SIZE = 50;
+
+    public static final String PERSON_PATH = "/api/person";
+    public static final String LOOKUP_PATH = "/lookup";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String READ_PRIMARY_COOKIE = "read-primary";
+    public static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int EXPORT_CHUNK_SIZE = 500;
+    public static final int PAGE_CHUNK_SIZE = 100;
+    public static final int BULK_MAX_SIZE = 50000;
+    public static final int BULK_CHUNK_SIZE = 500;
+    public static final int NAME_SEARCH_DEFAULT_LIMIT = 10;
+    public static final int NAME_SEARCH_MAX_LIMIT = 100;
+    public static final int NAME_INDEX_CHUNK_SIZE = 5000;
 }
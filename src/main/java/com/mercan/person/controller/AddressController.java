@@ -1,7 +1,10 @@
 package com.mercan.person.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.mercan.person.entity.Address;
 import com.mercan.person.service.AddressService;
+import com.mercan.person.service.PersonService;
+import com.mercan.person.util.ETags;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -9,30 +12,43 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
 import java.util.List;
 
+import static com.mercan.person.constants.PersonServiceConstants.MERGE_PATCH_JSON_VALUE;
+
 @RestController
 @RequestMapping(value = "/api/person")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 @Slf4j
 public class AddressController {
 
     private final AddressService addressService;
+    private final PersonService personService;
 
     @Operation(summary = "Get addresses by person id")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found addresses", content = {@Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Address.class))}),
+            @ApiResponse(responseCode = "304", description = "Addresses unchanged since the ETag in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid id supplied", content = @Content),
             @ApiResponse(responseCode = "404", description = "Person not found", content = @Content)})
     @GetMapping(value = "/{personId}/address", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<Address>> getAddress(@PathVariable("personId") Long personId) {
+    public ResponseEntity<List<Address>> getAddress(@PathVariable("personId") Long personId, WebRequest request) {
         log.info("get address for person : {}", personId);
+        // address changes bump the person's version, so it doubles as the version of the address list
+        if (request.checkNotModified(ETags.of(personService.getPersonVersion(personId)))) {
+            log.info("get address for person : {} not modified", personId);
+            return null;
+        }
         List<Address> addresses = addressService.getAddress(personId);
         log.info("get address for person : {} , response:{}", personId, addresses);
         return ResponseEntity.ok(addresses);
@@ -47,18 +63,50 @@ public class AddressController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdAddress);
     }
 
+    @Operation(summary = "Replace all addresses of a person")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Addresses replaced", content = {@Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Address.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid address supplied", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Person or address not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "Person is not at the version in If-Match", content = @Content)})
+    @PutMapping(value = "/{personId}/address", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Address>> replaceAddresses(@PathVariable("personId") Long personId,
+                                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                          @RequestBody List<Address> addresses
+    ) {
+        log.info("replace addresses for personId : {} if match : {} addresses : {}", personId, ifMatch, addresses);
+        List<Address> replacedAddresses = personService.replaceAddresses(personId, addresses, ETags.parseIfMatch(ifMatch, personId));
+        log.info("replace addresses response : {}", replacedAddresses);
+        return ResponseEntity.ok(replacedAddresses);
+    }
+
     @PutMapping(value = "/{personId}/address/{addressId}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Address> updateAddress(@PathVariable("personId") Long personId,
                                                  @PathVariable("addressId") Long addressId,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                                  @Valid @RequestBody Address address
     ) {
-        log.info("update address for personId : {} addressId : {} address : {}", personId, addressId, address);
-        Address updatedAddress = addressService.updateAddress(personId, addressId, address);
+        log.info("update address for personId : {} addressId : {} if match : {} address : {}", personId, addressId, ifMatch, address);
+        // the address list is versioned as a whole, so If-Match carries the person's ETag
+        Address updatedAddress = addressService.updateAddress(personId, addressId, address, ETags.parseIfMatch(ifMatch, personId));
         log.info("update address response : {}", updatedAddress);
         return ResponseEntity.ok(updatedAddress);
     }
 
 
+    @PatchMapping(value = "/{personId}/address/{addressId}", consumes = {MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Address> patchAddress(@PathVariable("personId") Long personId,
+                                                @PathVariable("addressId") Long addressId,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                @RequestBody JsonNode patch
+    ) {
+        log.info("patch address for personId : {} addressId : {} if match : {} patch : {}", personId, addressId, ifMatch, patch);
+        Address patchedAddress = addressService.patchAddress(personId, addressId, patch, ETags.parseIfMatch(ifMatch, personId));
+        log.info("patch address response : {}", patchedAddress);
+        return ResponseEntity.ok(patchedAddress);
+    }
+
+
     @DeleteMapping("/{personId}/address/{addressId}")
     public ResponseEntity deleteAddress(@PathVariable("personId") Long personId,
                                         @PathVariable("addressId") Long addressId
@@ -1,36 +1,135 @@
 package com.mercan.person.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mercan.person.entity.Person;
+import com.mercan.person.pojo.BulkCreateResult;
+import com.mercan.person.exception.InvalidRequest;
+import com.mercan.person.pojo.CursorPage;
+import com.mercan.person.pojo.NameMatch;
+import com.mercan.person.pojo.NameMatchMode;
+import com.mercan.person.pojo.PersonLookup;
+import com.mercan.person.pojo.PersonSearch;
+import com.mercan.person.pojo.PersonSort;
 import com.mercan.person.service.PersonService;
+import com.mercan.person.util.ETags;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
 import java.util.List;
 
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_INVALID_DIRECTION;
+import static com.mercan.person.constants.PersonServiceConstants.LOOKUP_PATH;
+import static com.mercan.person.constants.PersonServiceConstants.MERGE_PATCH_JSON_VALUE;
+import static com.mercan.person.constants.PersonServiceConstants.NEXT_CURSOR_HEADER;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_PATH;
+
 @RestController
-@RequestMapping(value = "/api/person")
+@RequestMapping(value = PERSON_PATH)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 @Slf4j
 public class PersonController {
 
     private final PersonService personService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<Person>> getPeople() {
-        log.info("get people");
-        List<Person> people = personService.getPeople();
-        log.info("get people response : {}", people);
-        return ResponseEntity.ok(people);
+    public ResponseEntity<List<Person>> getPeople(@RequestParam(value = "after", required = false) String after,
+                                                  @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("get people after : {} limit : {}", after, limit);
+        CursorPage<Person> page = personService.getPeople(after, limit);
+        log.info("get people response size : {} next cursor : {}", page.getItems().size(), page.getNextCursor());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Person>> searchPeople(@RequestParam(value = "firstName", required = false) String firstName,
+                                                     @RequestParam(value = "lastName", required = false) String lastName,
+                                                     @RequestParam(value = "city", required = false) String city,
+                                                     @RequestParam(value = "state", required = false) String state,
+                                                     @RequestParam(value = "postalCode", required = false) String postalCode,
+                                                     @RequestParam(value = "sort", required = false) String sort,
+                                                     @RequestParam(value = "direction", defaultValue = "asc") String direction,
+                                                     @RequestParam(value = "after", required = false) String after,
+                                                     @RequestParam(value = "limit", required = false) Integer limit) {
+        PersonSearch search = PersonSearch.builder()
+                .firstName(firstName)
+                .lastName(lastName)
+                .city(city)
+                .state(state)
+                .postalCode(postalCode)
+                .sort(PersonSort.fromParameter(sort))
+                .direction(Sort.Direction.fromOptionalString(direction)
+                        .orElseThrow(() -> new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_INVALID_DIRECTION))))
+                .build();
+        log.info("search people : {} after : {} limit : {}", search, after, limit);
+        CursorPage<Person> page = personService.searchPeople(search, after, limit);
+        log.info("search people response size : {} next cursor : {}", page.getItems().size(), page.getNextCursor());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping(value = "/search/names", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<NameMatch>> searchNames(@RequestParam(value = "q", required = false) String query,
+                                                       @RequestParam(value = "match", required = false) String match,
+                                                       @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("search names q : {} match : {} limit : {}", query, match, limit);
+        List<NameMatch> matches = personService.searchNames(query, NameMatchMode.fromParameter(match), limit);
+        log.info("search names response size : {}", matches.size());
+        return ResponseEntity.ok(matches);
+    }
+
+    /**
+     * A read that takes its ids in the body, as a thousand of them do not fit in a request line. The read-your-writes
+     * filter does not count it as a write.
+     */
+    @PostMapping(value = LOOKUP_PATH, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PersonLookup> lookupPeople(@RequestBody(required = false) List<Long> ids) {
+        log.info("lookup people ids : {}", ids);
+        PersonLookup lookup = personService.lookupPeople(ids);
+        log.info("lookup people response size : {} missing : {}", lookup.getPeople().size(), lookup.getMissing());
+        return ResponseEntity.ok(lookup);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportPeople(@RequestParam(value = "afterId", required = false) Long afterId) {
+        log.info("export people after id : {}", afterId);
+        StreamingResponseBody body = outputStream -> personService.exportPeople(afterId, person -> writeLine(outputStream, person));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping(value = "{personId}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Person> getPerson(@PathVariable("personId") Long personId) {
+    public ResponseEntity<Person> getPerson(@PathVariable("personId") Long personId, WebRequest request) {
         log.info("get person id : {}", personId);
+        // the version is read before the person so the ETag is never newer than the body it is sent with
+        if (request.checkNotModified(ETags.of(personService.getPersonVersion(personId)))) {
+            log.info("get person id : {} not modified", personId);
+            return null;
+        }
         Person person = personService.getPerson(personId);
         log.info("get person response : {}", person);
         return ResponseEntity.ok(person);
@@ -46,15 +145,35 @@ public class PersonController {
 
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkCreateResult> createPeople(@RequestBody List<Person> people) {
+        log.info("bulk create people : {}", people.size());
+        BulkCreateResult result = personService.createPeople(people);
+        log.info("bulk create people response created : {}", result.getCreated());
+        return ResponseEntity.status(HttpStatus.CREATED).body(result);
+    }
+
     @PutMapping(value = "{personId}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Person> updatePerson(@PathVariable("personId") Long personId, @Valid @RequestBody Person person) {
-        log.info("update person Id: {} , person {}", personId, person);
-        Person updatedPerson = personService.updatePerson(personId, person);
+    public ResponseEntity<Person> updatePerson(@PathVariable("personId") Long personId,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                               @Valid @RequestBody Person person) {
+        log.info("update person Id: {} , if match: {} , person {}", personId, ifMatch, person);
+        Person updatedPerson = personService.updatePerson(personId, person, ETags.parseIfMatch(ifMatch, personId));
         log.info("update person response: {}", person);
-        return ResponseEntity.ok(updatedPerson);
+        return ResponseEntity.ok().eTag(ETags.of(updatedPerson.getVersion())).body(updatedPerson);
 
     }
 
+    @PatchMapping(value = "{personId}", consumes = {MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Person> patchPerson(@PathVariable("personId") Long personId,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              @RequestBody JsonNode patch) {
+        log.info("patch person Id: {} , if match: {} , patch {}", personId, ifMatch, patch);
+        Person patchedPerson = personService.patchPerson(personId, patch, ETags.parseIfMatch(ifMatch, personId));
+        log.info("patch person response: {}", patchedPerson);
+        return ResponseEntity.ok().eTag(ETags.of(patchedPerson.getVersion())).body(patchedPerson);
+    }
+
     @DeleteMapping("{personId}")
     public ResponseEntity deletePerson(@PathVariable("personId") Long personId) {
         log.info("delete person: {}", personId);
@@ -62,4 +181,13 @@ public class PersonController {
         return ResponseEntity.noContent().build();
     }
 
+    private void writeLine(OutputStream outputStream, Person person) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(person));
+            outputStream.write('\n');
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
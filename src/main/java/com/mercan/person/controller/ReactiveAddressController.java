@@ -0,0 +1,103 @@
+package com.mercan.person.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mercan.person.entity.Address;
+import com.mercan.person.service.ReactiveAddressService;
+import com.mercan.person.service.ReactivePersonService;
+import com.mercan.person.util.ETags;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.util.List;
+
+import static com.mercan.person.constants.PersonServiceConstants.MERGE_PATCH_JSON_VALUE;
+
+/**
+ * {@link AddressController} on the non-blocking stack, served instead of it under the {@code reactive} profile with
+ * the same paths, statuses, headers and bodies.
+ */
+@RestController
+@RequestMapping(value = "/api/person")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveAddressController {
+
+    private final ReactiveAddressService reactiveAddressService;
+    private final ReactivePersonService reactivePersonService;
+
+    @GetMapping(value = "/{personId}/address", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Flux<Address>>> getAddress(@PathVariable("personId") Long personId, ServerWebExchange exchange) {
+        log.info("get address for person : {}", personId);
+        // address changes bump the person's version, so it doubles as the version of the address list
+        return reactivePersonService.getPersonVersion(personId).flatMap(version -> {
+            if (exchange.checkNotModified(ETags.of(version))) {
+                log.info("get address for person : {} not modified", personId);
+                return Mono.empty();
+            }
+            return Mono.just(ResponseEntity.ok(reactiveAddressService.getAddress(personId)));
+        });
+    }
+
+    @PostMapping(value = "/{personId}/address", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Address>> createAddress(@PathVariable("personId") Long personId, @Valid @RequestBody Address address) {
+        log.info("create address for person : {}", address);
+        return reactiveAddressService.createAddress(personId, address).map(createdAddress -> {
+            log.info("create address for person : {} response: {}", address, createdAddress);
+            return ResponseEntity.status(HttpStatus.CREATED).body(createdAddress);
+        });
+    }
+
+    @PutMapping(value = "/{personId}/address", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<Address>>> replaceAddresses(@PathVariable("personId") Long personId,
+                                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                                @RequestBody List<Address> addresses) {
+        log.info("replace addresses for personId : {} if match : {} addresses : {}", personId, ifMatch, addresses);
+        return reactivePersonService.replaceAddresses(personId, addresses, ETags.parseIfMatch(ifMatch, personId)).map(replacedAddresses -> {
+            log.info("replace addresses response : {}", replacedAddresses);
+            return ResponseEntity.ok(replacedAddresses);
+        });
+    }
+
+    @PutMapping(value = "/{personId}/address/{addressId}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Address>> updateAddress(@PathVariable("personId") Long personId,
+                                                       @PathVariable("addressId") Long addressId,
+                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                       @Valid @RequestBody Address address) {
+        log.info("update address for personId : {} addressId : {} if match : {} address : {}", personId, addressId, ifMatch, address);
+        // the address list is versioned as a whole, so If-Match carries the person's ETag
+        return reactiveAddressService.updateAddress(personId, addressId, address, ETags.parseIfMatch(ifMatch, personId)).map(updatedAddress -> {
+            log.info("update address response : {}", updatedAddress);
+            return ResponseEntity.ok(updatedAddress);
+        });
+    }
+
+    @PatchMapping(value = "/{personId}/address/{addressId}", consumes = {MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Address>> patchAddress(@PathVariable("personId") Long personId,
+                                                      @PathVariable("addressId") Long addressId,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                      @RequestBody JsonNode patch) {
+        log.info("patch address for personId : {} addressId : {} if match : {} patch : {}", personId, addressId, ifMatch, patch);
+        return reactiveAddressService.patchAddress(personId, addressId, patch, ETags.parseIfMatch(ifMatch, personId)).map(patchedAddress -> {
+            log.info("patch address response : {}", patchedAddress);
+            return ResponseEntity.ok(patchedAddress);
+        });
+    }
+
+    @DeleteMapping("/{personId}/address/{addressId}")
+    public Mono<ResponseEntity<Void>> deleteAddress(@PathVariable("personId") Long personId,
+                                                    @PathVariable("addressId") Long addressId) {
+        log.info("delete address for personId : {} addressId : {}", personId, addressId);
+        return reactiveAddressService.deleteAddress(addressId, personId).then(Mono.fromSupplier(() -> ResponseEntity.noContent().build()));
+    }
+}
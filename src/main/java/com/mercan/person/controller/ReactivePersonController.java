@@ -0,0 +1,113 @@
+package com.mercan.person.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mercan.person.entity.Person;
+import com.mercan.person.service.ReactivePersonService;
+import com.mercan.person.util.ETags;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+import static com.mercan.person.constants.PersonServiceConstants.MERGE_PATCH_JSON_VALUE;
+import static com.mercan.person.constants.PersonServiceConstants.NEXT_CURSOR_HEADER;
+
+/**
+ * {@link PersonController} on the non-blocking stack, served instead of it under the {@code reactive} profile with
+ * the same paths, statuses, headers and bodies. Bulk create and the search endpoints stay servlet only.
+ */
+@RestController
+@RequestMapping(value = "/api/person")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactivePersonController {
+
+    private final ReactivePersonService reactivePersonService;
+
+    /**
+     * Returns a page of people as a JSON array, or as NDJSON streamed with backpressure when the client accepts
+     * {@code application/x-ndjson}.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<Person>>> getPeople(@RequestParam(value = "after", required = false) String after,
+                                                        @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("get people after : {} limit : {}", after, limit);
+        return reactivePersonService.getPersonIds(after, limit).map(page -> {
+            log.info("get people response size : {} next cursor : {}", page.getItems().size(), page.getNextCursor());
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(reactivePersonService.findPeople(page.getItems()));
+        });
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Person> exportPeople(@RequestParam(value = "afterId", required = false) Long afterId) {
+        log.info("export people after id : {}", afterId);
+        return reactivePersonService.exportPeople(afterId);
+    }
+
+    @GetMapping(value = "{personId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Person>> getPerson(@PathVariable("personId") Long personId, ServerWebExchange exchange) {
+        log.info("get person id : {}", personId);
+        // the version is read before the person so the ETag is never newer than the body it is sent with
+        return reactivePersonService.getPersonVersion(personId).flatMap(version -> {
+            if (exchange.checkNotModified(ETags.of(version))) {
+                log.info("get person id : {} not modified", personId);
+                return Mono.empty();
+            }
+            return reactivePersonService.getPerson(personId).map(person -> {
+                log.info("get person response : {}", person);
+                return ResponseEntity.ok(person);
+            });
+        });
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Person>> createPerson(@Valid @RequestBody Person person) {
+        log.info("create person : {}", person);
+        return reactivePersonService.createPerson(person).map(createdPerson -> {
+            log.info("create person response: {}", createdPerson);
+            return ResponseEntity.status(HttpStatus.CREATED).body(createdPerson);
+        });
+    }
+
+    @PutMapping(value = "{personId}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Person>> updatePerson(@PathVariable("personId") Long personId,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                     @Valid @RequestBody Person person) {
+        log.info("update person Id: {} , if match: {} , person {}", personId, ifMatch, person);
+        return reactivePersonService.updatePerson(personId, person, ETags.parseIfMatch(ifMatch, personId)).map(updatedPerson -> {
+            log.info("update person response: {}", updatedPerson);
+            return ResponseEntity.ok().eTag(ETags.of(updatedPerson.getVersion())).body(updatedPerson);
+        });
+    }
+
+    @PatchMapping(value = "{personId}", consumes = {MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Person>> patchPerson(@PathVariable("personId") Long personId,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                    @RequestBody JsonNode patch) {
+        log.info("patch person Id: {} , if match: {} , patch {}", personId, ifMatch, patch);
+        return reactivePersonService.patchPerson(personId, patch, ETags.parseIfMatch(ifMatch, personId)).map(patchedPerson -> {
+            log.info("patch person response: {}", patchedPerson);
+            return ResponseEntity.ok().eTag(ETags.of(patchedPerson.getVersion())).body(patchedPerson);
+        });
+    }
+
+    @DeleteMapping("{personId}")
+    public Mono<ResponseEntity<Void>> deletePerson(@PathVariable("personId") Long personId) {
+        log.info("delete person: {}", personId);
+        return reactivePersonService.delete(personId).then(Mono.fromSupplier(() -> ResponseEntity.noContent().build()));
+    }
+}
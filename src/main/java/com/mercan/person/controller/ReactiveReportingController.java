@@ -0,0 +1,65 @@
+package com.mercan.person.controller;
+
+
+import com.mercan.person.pojo.AddressCountBucket;
+import com.mercan.person.pojo.LocationCount;
+import com.mercan.person.service.PersonService;
+import com.mercan.person.service.ReportAggregates;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * {@link ReportingController} on the non-blocking stack. Reports come from memory and are answered on the event
+ * loop; the {@code exact} variants query the database through JPA, so they run on the bounded elastic scheduler.
+ */
+@RestController
+@RequestMapping(value = "/api/report")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveReportingController {
+    private final PersonService personService;
+    private final ReportAggregates reportAggregates;
+
+    @GetMapping("/person/count")
+    public Mono<ResponseEntity<Long>> count(@RequestParam(value = "exact", defaultValue = "false") boolean exact) {
+        log.info("count person exact : {}", exact);
+        return report(exact, () -> personService.getPersonCount(exact));
+    }
+
+    @GetMapping(value = "/person/state", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<LocationCount>>> peopleByState(@RequestParam(value = "exact", defaultValue = "false") boolean exact) {
+        log.info("report people by state exact : {}", exact);
+        return report(exact, () -> reportAggregates.getPeopleByState(exact));
+    }
+
+    @GetMapping(value = "/person/city", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<LocationCount>>> peopleByCity(@RequestParam(value = "state", required = false) String state,
+                                                                  @RequestParam(value = "exact", defaultValue = "false") boolean exact) {
+        log.info("report people by city state : {} exact : {}", state, exact);
+        return report(exact, () -> reportAggregates.getPeopleByCity(state, exact));
+    }
+
+    @GetMapping(value = "/address/distribution", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<AddressCountBucket>>> addressDistribution(@RequestParam(value = "exact", defaultValue = "false") boolean exact) {
+        log.info("report address distribution exact : {}", exact);
+        return report(exact, () -> reportAggregates.getAddressDistribution(exact));
+    }
+
+    private static <T> Mono<ResponseEntity<T>> report(boolean exact, Callable<T> report) {
+        Mono<T> result = Mono.fromCallable(report);
+        return (exact ? result.subscribeOn(Schedulers.boundedElastic()) : result).map(ResponseEntity::ok);
+    }
+}
@@ -1,24 +1,53 @@
 package com.mercan.person.controller;
 
 
+import com.mercan.person.pojo.AddressCountBucket;
+import com.mercan.person.pojo.LocationCount;
 import com.mercan.person.service.PersonService;
+import com.mercan.person.service.ReportAggregates;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping(value = "/api/report")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 @Slf4j
 public class ReportingController {
     private final PersonService personService;
+    private final ReportAggregates reportAggregates;
 
     @GetMapping("/person/count")
-    public ResponseEntity count() {
-        log.info("count person");
-        return ResponseEntity.ok(personService.getPersonCount());
+    public ResponseEntity count(@RequestParam(value = "exact", defaultValue = "false") boolean exact) {
+        log.info("count person exact : {}", exact);
+        return ResponseEntity.ok(personService.getPersonCount(exact));
+    }
+
+    @GetMapping(value = "/person/state", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<LocationCount>> peopleByState(@RequestParam(value = "exact", defaultValue = "false") boolean exact) {
+        log.info("report people by state exact : {}", exact);
+        return ResponseEntity.ok(reportAggregates.getPeopleByState(exact));
+    }
+
+    @GetMapping(value = "/person/city", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<LocationCount>> peopleByCity(@RequestParam(value = "state", required = false) String state,
+                                                            @RequestParam(value = "exact", defaultValue = "false") boolean exact) {
+        log.info("report people by city state : {} exact : {}", state, exact);
+        return ResponseEntity.ok(reportAggregates.getPeopleByCity(state, exact));
+    }
+
+    @GetMapping(value = "/address/distribution", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<AddressCountBucket>> addressDistribution(@RequestParam(value = "exact", defaultValue = "false") boolean exact) {
+        log.info("report address distribution exact : {}", exact);
+        return ResponseEntity.ok(reportAggregates.getAddressDistribution(exact));
     }
 }
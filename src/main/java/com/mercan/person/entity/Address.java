@@ -4,19 +4,37 @@ package com.mercan.person.entity;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
 
+import static com.mercan.person.constants.PersonServiceConstants.ADDRESS_REGION;
+import static com.mercan.person.constants.PersonServiceConstants.ADDRESS_SEQUENCE;
+
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_address_person_id", columnList = "person_id"),
+        @Index(name = "idx_address_city", columnList = "city"),
+        @Index(name = "idx_address_state_city", columnList = "state, city"),
+        @Index(name = "idx_address_postal_code", columnList = "postalCode")})
+@DynamicUpdate
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = ADDRESS_REGION)
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
 @Builder
 public class Address {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ADDRESS_SEQUENCE)
+    @GenericGenerator(name = ADDRESS_SEQUENCE, strategy = "com.mercan.person.entity.ConfiguredSequenceGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = ADDRESS_SEQUENCE))
     private Long id;
 
     @NotBlank(message = "is mandatory")
@@ -35,12 +53,16 @@ public class Address {
     @Size(max = 20)
     private String postalCode;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "person_id", nullable = false)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JsonIgnore
     private Person person;
 
+    @Version
+    @JsonIgnore
+    private Long version;
+
     public Address() {
     }
 
@@ -53,6 +75,11 @@ public class Address {
         this.person = person;
     }
 
+    public Address(Long id, String street, String city, String state, String postalCode, Person person, Long version) {
+        this(id, street, city, state, postalCode, person);
+        this.version = version;
+    }
+
     public Long getId() {
         return id;
     }
@@ -101,6 +128,14 @@ public class Address {
         this.person = person;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
 
     @Override
     public String toString() {
@@ -110,7 +145,6 @@ public class Address {
                 ", city='" + city + '\'' +
                 ", state='" + state + '\'' +
                 ", postalCode='" + postalCode + '\'' +
-                ", person=" + person +
                 '}';
     }
 }
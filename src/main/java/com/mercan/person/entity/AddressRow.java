@@ -0,0 +1,45 @@
+package com.mercan.person.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * The address table as the reactive stack reads and writes it through R2DBC, with the owning person as a plain id.
+ * Responses are still rendered as {@link Address}.
+ */
+@Table("address")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AddressRow {
+    @Id
+    private Long id;
+    private String street;
+    private String city;
+    private String state;
+    private String postalCode;
+    private Long personId;
+    @Version
+    private Long version;
+
+    public static AddressRow of(Long id, Long personId, Address address) {
+        return AddressRow.builder()
+                .id(id)
+                .street(address.getStreet())
+                .city(address.getCity())
+                .state(address.getState())
+                .postalCode(address.getPostalCode())
+                .personId(personId)
+                .build();
+    }
+
+    public Address toAddress() {
+        return new Address(id, street, city, state, postalCode, null, version);
+    }
+}
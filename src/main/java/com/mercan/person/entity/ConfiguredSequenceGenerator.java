@@ -0,0 +1,31 @@
+package com.mercan.person.entity;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+import static com.mercan.person.constants.PersonServiceConstants.DEFAULT_ID_ALLOCATION_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.ID_ALLOCATION_SIZE_SETTING;
+
+/**
+ * Sequence generator reserving {@code person.id.allocation-size} ids at a time rather than a size fixed in the
+ * mapping. The sequence must be incremented by the same size: Hibernate refuses to start against an existing
+ * sequence that is not, and {@code db/schema.sql} has to be kept in step by hand.
+ */
+public class ConfiguredSequenceGenerator extends SequenceStyleGenerator {
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        int allocationSize = ConfigurationHelper.getInt(ID_ALLOCATION_SIZE_SETTING,
+                serviceRegistry.getService(ConfigurationService.class).getSettings(), DEFAULT_ID_ALLOCATION_SIZE);
+        Properties configured = new Properties();
+        configured.putAll(params);
+        configured.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        super.configure(type, configured, serviceRegistry);
+    }
+}
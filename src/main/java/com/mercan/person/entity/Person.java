@@ -1,19 +1,42 @@
 package com.mercan.person.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Builder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_ADDRESS_REGION;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_REGION;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_SEQUENCE;
+
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_person_last_name", columnList = "lastName, id"),
+        @Index(name = "idx_person_first_name", columnList = "firstName, id")})
+@DynamicUpdate
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = PERSON_REGION)
+@NamedEntityGraph(name = Person.WITH_ADDRESS_GRAPH, attributeNodes = @NamedAttributeNode("address"))
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
 @Builder
 public class Person {
 
+    public static final String WITH_ADDRESS_GRAPH = "Person.address";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = PERSON_SEQUENCE)
+    @GenericGenerator(name = PERSON_SEQUENCE, strategy = "com.mercan.person.entity.ConfiguredSequenceGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = PERSON_SEQUENCE))
     private Long id;
 
     @NotBlank(message = "is mandatory")
@@ -24,9 +47,18 @@ public class Person {
     @Size(max = 250)
     private String lastName;
 
-    @OneToMany(mappedBy = "person", fetch = FetchType.EAGER , cascade = CascadeType.ALL , orphanRemoval = true)
+    @OneToMany(mappedBy = "person", fetch = FetchType.LAZY, cascade = CascadeType.ALL , orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = PERSON_ADDRESS_REGION)
+    // kept in request order, so validation errors can name an address by its index
+    @JsonDeserialize(as = LinkedHashSet.class)
     private Set<Address> address;
 
+    /**
+     * Incremented on every change to the person or one of its addresses; the ETag of both resources.
+     */
+    @Version
+    @JsonIgnore
+    private Long version;
 
     public Person() {
     }
@@ -38,6 +70,11 @@ public class Person {
         this.address = address;
     }
 
+    public Person(Long id, String firstName, String lastName, Set<Address> address, Long version) {
+        this(id, firstName, lastName, address);
+        this.version = version;
+    }
+
     public Long getId() {
         return id;
     }
@@ -70,6 +107,14 @@ public class Person {
         this.address = address;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
 
     @Override
     public String toString() {
@@ -0,0 +1,41 @@
+package com.mercan.person.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.util.Set;
+
+/**
+ * The person table as the reactive stack reads and writes it through R2DBC, which maps single rows and leaves the
+ * address association to the caller. Responses are still rendered as {@link Person}.
+ */
+@Table("person")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PersonRow {
+    @Id
+    private Long id;
+    private String firstName;
+    private String lastName;
+    @Version
+    private Long version;
+
+    public static PersonRow of(Long id, Person person) {
+        return PersonRow.builder()
+                .id(id)
+                .firstName(person.getFirstName())
+                .lastName(person.getLastName())
+                .build();
+    }
+
+    public Person toPerson(Set<Address> addresses) {
+        return new Person(id, firstName, lastName, addresses, version);
+    }
+}
@@ -0,0 +1,13 @@
+package com.mercan.person.exception;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Data
+public class InvalidRequest extends RuntimeException {
+
+    private List<String> errors;
+}
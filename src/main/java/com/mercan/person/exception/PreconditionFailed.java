@@ -0,0 +1,13 @@
+package com.mercan.person.exception;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@AllArgsConstructor
+@Data
+public class PreconditionFailed extends RuntimeException {
+
+    private String collection;
+    private Object id;
+    private Long expectedVersion;
+}
@@ -1,19 +1,27 @@
 package com.mercan.person.handler;
 
+import com.mercan.person.exception.InvalidRequest;
 import com.mercan.person.exception.ObjectNotFound;
+import com.mercan.person.exception.PreconditionFailed;
 import com.mercan.person.pojo.ApiError;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_CONCURRENT_MODIFICATION;
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_PRECONDITION_FAILED;
 import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_RESOURCE_NOT_FOUND;
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_WEAK_IF_MATCH;
 
 @Component
 @RestControllerAdvice
@@ -32,8 +40,20 @@ public class PersonWebExceptionHandler {
 
     @ExceptionHandler({MethodArgumentNotValidException.class})
     public ResponseEntity<ApiError> handleNotValidException(MethodArgumentNotValidException notValidException) {
+        return invalidFields(notValidException.getBindingResult());
+    }
+
+    /**
+     * The reactive stack's counterpart of {@link MethodArgumentNotValidException}, rendered the same way.
+     */
+    @ExceptionHandler({WebExchangeBindException.class})
+    public ResponseEntity<ApiError> handleNotValidException(WebExchangeBindException notValidException) {
+        return invalidFields(notValidException.getBindingResult());
+    }
+
+    private ResponseEntity<ApiError> invalidFields(BindingResult bindingResult) {
         List<String> errors = new ArrayList<>();
-        for (FieldError error : notValidException.getBindingResult().getFieldErrors()) {
+        for (FieldError error : bindingResult.getFieldErrors()) {
             errors.add(error.getField() + ": " + error.getDefaultMessage());
         }
         ApiError build = ApiError.builder()
@@ -42,4 +62,40 @@ public class PersonWebExceptionHandler {
                 .build();
         return new ResponseEntity<>(build, HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler({InvalidRequest.class})
+    public ResponseEntity<ApiError> handleInvalidRequest(InvalidRequest invalidRequest) {
+        ApiError build = ApiError.builder()
+                .reasonCode(HttpStatus.BAD_REQUEST.name())
+                .errors(invalidRequest.getErrors())
+                .build();
+        return new ResponseEntity<>(build, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler({PreconditionFailed.class})
+    public ResponseEntity<ApiError> handlePreconditionFailed(PreconditionFailed preconditionFailed) {
+        List<String> errors = new ArrayList<>();
+        if (preconditionFailed.getExpectedVersion() == null) {
+            errors.add(ERROR_MESSAGE_WEAK_IF_MATCH);
+        } else {
+            errors.add(String.format(ERROR_MESSAGE_PRECONDITION_FAILED, preconditionFailed.getCollection(),
+                    preconditionFailed.getId(), preconditionFailed.getExpectedVersion()));
+        }
+        ApiError build = ApiError.builder()
+                .reasonCode(HttpStatus.PRECONDITION_FAILED.name())
+                .errors(errors)
+                .build();
+        return new ResponseEntity<>(build, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler({OptimisticLockingFailureException.class})
+    public ResponseEntity<ApiError> handleOptimisticLockingFailure(OptimisticLockingFailureException optimisticLockingFailure) {
+        List<String> errors = new ArrayList<>();
+        errors.add(ERROR_MESSAGE_CONCURRENT_MODIFICATION);
+        ApiError build = ApiError.builder()
+                .reasonCode(HttpStatus.CONFLICT.name())
+                .errors(errors)
+                .build();
+        return new ResponseEntity<>(build, HttpStatus.CONFLICT);
+    }
 }
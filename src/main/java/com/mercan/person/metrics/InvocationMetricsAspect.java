@@ -0,0 +1,78 @@
+package com.mercan.person.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Times every public service method as {@code person.service} and every repository call as
+ * {@code person.repository}, tagged with class, method and exception. Web endpoints are already timed by
+ * Spring Boot as {@code http.server.requests}; histograms for all three are enabled in application.properties.
+ * Methods returning a {@code Mono} or {@code Flux} are timed from subscription until they complete or fail.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class InvocationMetricsAspect {
+    public static final String SERVICE_TIMER = "person.service";
+    public static final String REPOSITORY_TIMER = "person.repository";
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("within(com.mercan.person.service..*) && execution(public * *(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(SERVICE_TIMER, joinPoint, point -> point.getSignature().getDeclaringType().getSimpleName());
+    }
+
+    @Around("target(org.springframework.data.repository.Repository) && execution(public * *(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(REPOSITORY_TIMER, joinPoint, point -> point.getTarget().getClass().getInterfaces()[0].getSimpleName());
+    }
+
+    private Object time(String name, ProceedingJoinPoint joinPoint, Function<ProceedingJoinPoint, String> className) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            stop(sample, name, joinPoint, className, e);
+            throw e;
+        }
+        // a reactive method only assembles its work, which runs once subscribed, so that is what gets timed
+        if (result instanceof Mono) {
+            return Mono.defer(() -> {
+                Timer.Sample subscribed = Timer.start(meterRegistry);
+                return ((Mono<?>) result)
+                        .doOnSuccess(value -> stop(subscribed, name, joinPoint, className, null))
+                        .doOnError(e -> stop(subscribed, name, joinPoint, className, e));
+            });
+        }
+        if (result instanceof Flux) {
+            return Flux.defer(() -> {
+                Timer.Sample subscribed = Timer.start(meterRegistry);
+                return ((Flux<?>) result)
+                        .doOnComplete(() -> stop(subscribed, name, joinPoint, className, null))
+                        .doOnError(e -> stop(subscribed, name, joinPoint, className, e));
+            });
+        }
+        stop(sample, name, joinPoint, className, null);
+        return result;
+    }
+
+    private void stop(Timer.Sample sample, String name, ProceedingJoinPoint joinPoint,
+                      Function<ProceedingJoinPoint, String> className, Throwable exception) {
+        sample.stop(Timer.builder(name)
+                .tag("class", className.apply(joinPoint))
+                .tag("method", joinPoint.getSignature().getName())
+                .tag("exception", exception == null ? "none" : exception.getClass().getSimpleName())
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,13 @@
+package com.mercan.person.pojo;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class AddressCountBucket {
+
+    private int addresses;
+    private long people;
+
+}
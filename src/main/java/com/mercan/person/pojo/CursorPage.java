@@ -0,0 +1,15 @@
+package com.mercan.person.pojo;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class CursorPage<T> {
+
+    private List<T> items;
+    private String nextCursor;
+
+}
@@ -0,0 +1,19 @@
+package com.mercan.person.pojo;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Position of the last row of a page sorted by {@code value} and then by {@code id}; {@code value} is
+ * {@code null} when the sort is on the id alone. {@code sort} is the order the page was in, which the position only
+ * makes sense for.
+ */
+@Data
+@Builder
+public class Keyset {
+
+    private PersonSort sort;
+    private Long id;
+    private String value;
+
+}
@@ -0,0 +1,16 @@
+package com.mercan.person.pojo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LocationCount {
+
+    private String state;
+    private String city;
+    private long people;
+
+}
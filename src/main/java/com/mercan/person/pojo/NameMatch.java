@@ -0,0 +1,15 @@
+package com.mercan.person.pojo;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class NameMatch {
+
+    private Long id;
+    private String firstName;
+    private String lastName;
+    private double score;
+
+}
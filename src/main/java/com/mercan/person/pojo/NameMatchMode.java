@@ -0,0 +1,32 @@
+package com.mercan.person.pojo;
+
+import com.mercan.person.exception.InvalidRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_INVALID_MATCH;
+
+/**
+ * How a name search matches: {@code trigram} tolerates typos, {@code phonetic} finds names that sound alike.
+ */
+public enum NameMatchMode {
+    TRIGRAM("trigram"),
+    PHONETIC("phonetic");
+
+    private final String parameter;
+
+    NameMatchMode(String parameter) {
+        this.parameter = parameter;
+    }
+
+    public static NameMatchMode fromParameter(String parameter) {
+        if (parameter == null) {
+            return TRIGRAM;
+        }
+        return Arrays.stream(values())
+                .filter(mode -> mode.parameter.equals(parameter))
+                .findFirst()
+                .orElseThrow(() -> new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_INVALID_MATCH)));
+    }
+}
@@ -0,0 +1,16 @@
+package com.mercan.person.pojo;
+
+import com.mercan.person.entity.Person;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class PersonLookup {
+
+    private List<Person> people;
+    private List<Long> missing;
+
+}
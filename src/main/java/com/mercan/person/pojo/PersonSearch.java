@@ -0,0 +1,28 @@
+package com.mercan.person.pojo;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Filters of a person search. Names match by case-sensitive prefix, address fields exactly, and all address
+ * filters must hold for the same address; {@code null} filters are ignored.
+ */
+@Data
+@Builder
+public class PersonSearch {
+
+    private String firstName;
+    private String lastName;
+    private String city;
+    private String state;
+    private String postalCode;
+    @Builder.Default
+    private PersonSort sort = PersonSort.ID;
+    @Builder.Default
+    private Sort.Direction direction = Sort.Direction.ASC;
+
+    public boolean hasAddressFilter() {
+        return city != null || state != null || postalCode != null;
+    }
+}
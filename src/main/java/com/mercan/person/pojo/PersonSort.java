@@ -0,0 +1,37 @@
+package com.mercan.person.pojo;
+
+import com.mercan.person.exception.InvalidRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_INVALID_SORT;
+
+/**
+ * Sort orders of a person search, each backed by an index ending in the id tie-breaker.
+ */
+public enum PersonSort {
+    ID("id"),
+    LAST_NAME("lastName"),
+    FIRST_NAME("firstName");
+
+    private final String attribute;
+
+    PersonSort(String attribute) {
+        this.attribute = attribute;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public static PersonSort fromParameter(String parameter) {
+        if (parameter == null) {
+            return ID;
+        }
+        return Arrays.stream(values())
+                .filter(sort -> sort.attribute.equals(parameter))
+                .findFirst()
+                .orElseThrow(() -> new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_INVALID_SORT)));
+    }
+}
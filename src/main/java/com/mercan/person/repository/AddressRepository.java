@@ -2,13 +2,85 @@ package com.mercan.person.repository;
 
 import com.mercan.person.entity.Address;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
 
+import static com.mercan.person.constants.PersonServiceConstants.SCOPED_WRITE_SPACE;
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
+/**
+ * The writes scoped to one person's address are native statements synchronized on {@code SCOPED_WRITE_SPACE}, a
+ * query space no entity uses, so Hibernate does not empty the whole second-level cache region after each of them;
+ * callers evict the entries they touched instead.
+ */
 public interface AddressRepository extends JpaRepository<Address, Long> {
 
-    List<Address> findAllByPersonId(Long personId);
+    /**
+     * Returns the addresses of a person in one query that also proves the person exists: the result is empty
+     * when the person does not exist and holds a single {@code null} when the person has no addresses.
+     */
+    @Query("select a from Person p left join p.address a where p.id = :personId")
+    List<Address> findAllByExistingPersonId(@Param("personId") Long personId);
+
+    Optional<Address> findByIdAndPersonId(Long id, Long personId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update address set street = :street, city = :city, state = :state, postal_code = :postalCode, " +
+            "version = version + 1 " +
+            "where id = :addressId and person_id = :personId", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = SCOPED_WRITE_SPACE))
+    int updateByIdAndPersonId(@Param("addressId") Long addressId, @Param("personId") Long personId,
+                              @Param("street") String street, @Param("city") String city,
+                              @Param("state") String state, @Param("postalCode") String postalCode);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from address where id = :addressId and person_id = :personId", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = SCOPED_WRITE_SPACE))
+    int deleteByIdAndPersonId(@Param("addressId") Long addressId, @Param("personId") Long personId);
+
+    @Query("select a.id as id, a.state as state, a.city as city from Address a where a.person.id = :personId")
+    List<AddressLocation> findLocationsByPersonId(@Param("personId") Long personId);
+
+    @Query("select a.state as state, count(distinct a.person.id) as people from Address a group by a.state")
+    List<LocationTally> countPeopleByState();
+
+    @Query("select a.state as state, a.city as city, count(distinct a.person.id) as people from Address a " +
+            "group by a.state, a.city")
+    List<LocationTally> countPeopleByCity();
+
+    @Query(value = "select c.addresses as addresses, count(*) as people from " +
+            "(select count(a.id) as addresses from person p left join address a on a.person_id = p.id group by p.id) c " +
+            "group by c.addresses", nativeQuery = true)
+    List<AddressCountTally> countPeopleByAddressCount();
+
+    interface AddressLocation {
+        Long getId();
+
+        String getState();
+
+        String getCity();
+    }
+
+    interface LocationTally {
+        String getState();
+
+        String getCity();
+
+        Long getPeople();
+    }
+
+    interface AddressCountTally {
+        Long getAddresses();
 
-    Optional<Address> findAllByIdAndPersonId(Long addressId, Long personId);
+        Long getPeople();
+    }
 }
@@ -0,0 +1,45 @@
+package com.mercan.person.repository;
+
+import com.mercan.person.entity.AddressRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+import static com.mercan.person.constants.PersonServiceConstants.ADDRESS_SEQUENCE;
+
+/**
+ * Non-blocking access to the address table for the reactive stack. Statements mirror {@link AddressRepository}.
+ */
+public interface AddressRowRepository extends R2dbcRepository<AddressRow, Long> {
+
+    /**
+     * Reserves the next block of {@code person.id.allocation-size} address ids, which starts at the returned value.
+     */
+    @Query("select next value for " + ADDRESS_SEQUENCE)
+    Mono<Long> nextIdBlock();
+
+    @Query("select * from address where person_id = :personId order by id")
+    Flux<AddressRow> findByPersonId(@Param("personId") Long personId);
+
+    @Query("select * from address where person_id in (:personIds)")
+    Flux<AddressRow> findByPersonIdIn(@Param("personIds") Collection<Long> personIds);
+
+    @Query("select * from address where id = :addressId and person_id = :personId")
+    Mono<AddressRow> findByIdAndPersonId(@Param("addressId") Long addressId, @Param("personId") Long personId);
+
+    @Modifying
+    @Query("update address set street = :street, city = :city, state = :state, postal_code = :postalCode, " +
+            "version = version + 1 where id = :addressId and person_id = :personId")
+    Mono<Integer> updateByIdAndPersonId(@Param("addressId") Long addressId, @Param("personId") Long personId,
+                                        @Param("street") String street, @Param("city") String city,
+                                        @Param("state") String state, @Param("postalCode") String postalCode);
+
+    @Modifying
+    @Query("delete from address where id = :addressId and person_id = :personId")
+    Mono<Integer> deleteByIdAndPersonId(@Param("addressId") Long addressId, @Param("personId") Long personId);
+}
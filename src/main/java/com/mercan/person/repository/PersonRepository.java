@@ -1,15 +1,94 @@
 package com.mercan.person.repository;
 
 import com.mercan.person.entity.Person;
+import org.hibernate.Hibernate;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+
+import static com.mercan.person.constants.PersonServiceConstants.SCOPED_WRITE_SPACE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+import static org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH;
 
 
 @Repository
-public interface PersonRepository extends JpaRepository<Person, Long> {
+public interface PersonRepository extends JpaRepository<Person, Long>, PersonSearchRepository {
+
+    /**
+     * Cached in the query cache, which drops the result as soon as the person table is written.
+     */
+    @Query("select p.id from Person p where p.id > :id order by p.id")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<Long> findIdsByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Reads only the names of people after the given id, in id order, for building the name index.
+     */
+    List<PersonName> findNamesByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Loads the given people together with their addresses in a single join query. Paging is done on ids first
+     * because limiting a collection fetch join would be applied in memory.
+     */
+    @EntityGraph(Person.WITH_ADDRESS_GRAPH)
+    @QueryHints(@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"))
+    List<Person> findDistinctByIdInOrderByIdAsc(Collection<Long> ids);
+
+    /**
+     * Loads a person with its addresses. The person, the ids of its addresses and the addresses themselves are
+     * read from the second-level cache where present, so a person read or written recently costs no statement.
+     */
+    @Transactional(readOnly = true)
+    default Optional<Person> findWithAddressById(Long id) {
+        Optional<Person> person = findById(id);
+        person.ifPresent(found -> Hibernate.initialize(found.getAddress()));
+        return person;
+    }
+
+    /**
+     * Reads the version column alone, for the ETag checks that do not need the person itself.
+     */
+    @Transactional(readOnly = true)
+    @Query("select p.version from Person p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Marks a person as changed when one of its addresses changes, so the person's version covers the whole
+     * aggregate. Like the address writes it leaves the second-level cache to the caller, see {@link
+     * AddressRepository}.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update person set version = version + 1 where id = :id", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = SCOPED_WRITE_SPACE))
+    int incrementVersion(@Param("id") Long id);
+
+    /**
+     * Compare-and-set on the version: returns 0 when the person is missing or no longer at {@code version}.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update person set version = version + 1 where id = :id and version = :version", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = SCOPED_WRITE_SPACE))
+    int incrementVersionIfMatches(@Param("id") Long id, @Param("version") Long version);
+
+    interface PersonName {
+        Long getId();
+
+        String getFirstName();
 
-    @Override
-    List<Person> findAll();
+        String getLastName();
+    }
 }
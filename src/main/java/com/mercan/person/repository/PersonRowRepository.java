@@ -0,0 +1,65 @@
+package com.mercan.person.repository;
+
+import com.mercan.person.entity.PersonRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_SEQUENCE;
+
+/**
+ * Non-blocking access to the person table for the reactive stack. Statements mirror {@link PersonRepository}, so
+ * both stacks version people the same way.
+ */
+public interface PersonRowRepository extends R2dbcRepository<PersonRow, Long> {
+
+    @Query("select id from person where id > :id order by id limit :limit")
+    Flux<Long> findIdsByIdGreaterThan(@Param("id") Long id, @Param("limit") int limit);
+
+    @Query("select * from person where id in (:ids) order by id")
+    Flux<PersonRow> findByIdInOrderById(@Param("ids") Collection<Long> ids);
+
+    @Query("select * from person where id > :id order by id limit :limit")
+    Flux<PersonRow> findByIdGreaterThan(@Param("id") Long id, @Param("limit") int limit);
+
+    /**
+     * Reserves the next block of {@code person.id.allocation-size} person ids, which starts at the returned value.
+     */
+    @Query("select next value for " + PERSON_SEQUENCE)
+    Mono<Long> nextIdBlock();
+
+    @Query("select version from person where id = :id")
+    Mono<Long> findVersionById(@Param("id") Long id);
+
+    @Modifying
+    @Query("update person set version = version + 1 where id = :id")
+    Mono<Integer> incrementVersion(@Param("id") Long id);
+
+    /**
+     * Compare-and-set on the version: returns 0 when the person is missing or no longer at {@code version}.
+     */
+    @Modifying
+    @Query("update person set version = version + 1 where id = :id and version = :version")
+    Mono<Integer> incrementVersionIfMatches(@Param("id") Long id, @Param("version") Long version);
+
+    /**
+     * Writes the names and bumps the version if the person is still at {@code version}, returning 0 otherwise.
+     */
+    @Modifying
+    @Query("update person set first_name = :firstName, last_name = :lastName, version = version + 1 " +
+            "where id = :id and version = :version")
+    Mono<Integer> updateIfMatches(@Param("id") Long id, @Param("version") Long version,
+                                  @Param("firstName") String firstName, @Param("lastName") String lastName);
+
+    /**
+     * Deletes a person; the foreign key deletes its addresses.
+     */
+    @Modifying
+    @Query("delete from person where id = :id")
+    Mono<Integer> deleteReturningCount(@Param("id") Long id);
+}
@@ -0,0 +1,15 @@
+package com.mercan.person.repository;
+
+import com.mercan.person.pojo.Keyset;
+import com.mercan.person.pojo.PersonSearch;
+
+import java.util.List;
+
+public interface PersonSearchRepository {
+
+    /**
+     * Returns the ids of up to {@code limit} people matching the search, in search order and after the given
+     * position, or from the start when {@code after} is {@code null}.
+     */
+    List<Long> searchIds(PersonSearch search, Keyset after, int limit);
+}
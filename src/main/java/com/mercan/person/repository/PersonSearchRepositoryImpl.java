@@ -0,0 +1,95 @@
+package com.mercan.person.repository;
+
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.Person;
+import com.mercan.person.pojo.Keyset;
+import com.mercan.person.pojo.PersonSearch;
+import com.mercan.person.pojo.PersonSort;
+import lombok.RequiredArgsConstructor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds the search as a criteria query so that only the filters actually given end up in the SQL, each one
+ * matching an index: name prefixes range-scan {@code idx_person_last_name} / {@code idx_person_first_name}, and
+ * address filters select person ids through the address indexes.
+ */
+@RequiredArgsConstructor
+public class PersonSearchRepositoryImpl implements PersonSearchRepository {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<Long> searchIds(PersonSearch search, Keyset after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Person> person = query.from(Person.class);
+        Path<Long> id = person.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (search.getLastName() != null) {
+            predicates.add(startsWith(cb, person.get("lastName"), search.getLastName()));
+        }
+        if (search.getFirstName() != null) {
+            predicates.add(startsWith(cb, person.get("firstName"), search.getFirstName()));
+        }
+        if (search.hasAddressFilter()) {
+            predicates.add(id.in(personIdsWithAddress(cb, query, search)));
+        }
+
+        PersonSort sort = search.getSort();
+        boolean descending = search.getDirection().isDescending();
+        if (sort == PersonSort.ID) {
+            if (after != null) {
+                predicates.add(descending ? cb.lessThan(id, after.getId()) : cb.greaterThan(id, after.getId()));
+            }
+            query.orderBy(descending ? cb.desc(id) : cb.asc(id));
+        } else {
+            Path<String> value = person.get(sort.getAttribute());
+            if (after != null) {
+                // the inclusive bound alone is an index range; the disjunction only filters inside it
+                predicates.add(descending
+                        ? cb.and(cb.lessThanOrEqualTo(value, after.getValue()),
+                        cb.or(cb.lessThan(value, after.getValue()), cb.lessThan(id, after.getId())))
+                        : cb.and(cb.greaterThanOrEqualTo(value, after.getValue()),
+                        cb.or(cb.greaterThan(value, after.getValue()), cb.greaterThan(id, after.getId()))));
+            }
+            query.orderBy(descending ? Arrays.asList(cb.desc(value), cb.desc(id)) : Arrays.asList(cb.asc(value), cb.asc(id)));
+        }
+
+        query.select(id).where(predicates.toArray(new Predicate[0]));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    private static Subquery<Long> personIdsWithAddress(CriteriaBuilder cb, CriteriaQuery<Long> query, PersonSearch search) {
+        Subquery<Long> subquery = query.subquery(Long.class);
+        Root<Address> address = subquery.from(Address.class);
+        List<Predicate> predicates = new ArrayList<>();
+        if (search.getCity() != null) {
+            predicates.add(cb.equal(address.get("city"), search.getCity()));
+        }
+        if (search.getState() != null) {
+            predicates.add(cb.equal(address.get("state"), search.getState()));
+        }
+        if (search.getPostalCode() != null) {
+            predicates.add(cb.equal(address.get("postalCode"), search.getPostalCode()));
+        }
+        return subquery.select(address.get("person").get("id")).where(predicates.toArray(new Predicate[0]));
+    }
+
+    private static Predicate startsWith(CriteriaBuilder cb, Path<String> path, String prefix) {
+        String escaped = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return cb.like(path, escaped + "%", LIKE_ESCAPE);
+    }
+}
@@ -0,0 +1,71 @@
+package com.mercan.person.routing;
+
+import java.util.function.Supplier;
+
+/**
+ * The per-thread state {@link ReplicaRoutingDataSource} routes on: whether the transaction being started is read-only
+ * and whether the thread is held on the primary. Nothing is routed to a replica unless a routing data source is
+ * configured, so callers can mark reads without knowing whether replicas exist.
+ * <p>
+ * Whether the thread's last transaction read from a replica is kept past its end, for the caches that must not be
+ * filled with what a lagging replica returned.
+ */
+public final class ReadRouting {
+    private static final ThreadLocal<Boolean> READ_ONLY_TRANSACTION = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> READ_FROM_REPLICA = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    /**
+     * Runs a read on the primary, for reads that must see every committed write, such as the reconciliations of
+     * in-memory state.
+     */
+    public static <T> T onPrimary(Supplier<T> read) {
+        Boolean previous = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            restore(PRIMARY_ONLY, previous);
+        }
+    }
+
+    /**
+     * Whether the last transaction begun on this thread was routed to a replica. Always false without replicas.
+     */
+    public static boolean readFromReplica() {
+        return Boolean.TRUE.equals(READ_FROM_REPLICA.get());
+    }
+
+    static boolean routesToReplica() {
+        return Boolean.TRUE.equals(READ_ONLY_TRANSACTION.get()) && !Boolean.TRUE.equals(PRIMARY_ONLY.get());
+    }
+
+    static void beginTransaction(boolean readOnly) {
+        READ_ONLY_TRANSACTION.set(readOnly);
+        READ_FROM_REPLICA.set(routesToReplica());
+    }
+
+    static void endTransaction() {
+        READ_ONLY_TRANSACTION.remove();
+    }
+
+    static void holdOnPrimary(boolean primaryOnly) {
+        PRIMARY_ONLY.set(primaryOnly);
+    }
+
+    static void release() {
+        PRIMARY_ONLY.remove();
+        READ_FROM_REPLICA.remove();
+    }
+
+    private static void restore(ThreadLocal<Boolean> local, Boolean previous) {
+        if (previous == null) {
+            local.remove();
+        } else {
+            local.set(previous);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.mercan.person.routing;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Set;
+
+import static com.mercan.person.constants.PersonServiceConstants.READ_PRIMARY_COOKIE;
+
+/**
+ * Read-your-writes over lagging replicas. A request with a writing method runs on the primary and sets a cookie that
+ * keeps the client's following requests on the primary for {@code stickySeconds}, which should cover the replicas'
+ * lag; clients without the cookie read from the replicas. POSTs to {@code readOnlyPostPaths} only read, taking their
+ * input in the body for size, and are not counted as writes.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    private final int stickySeconds;
+    private final Set<String> readOnlyPostPaths;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public ReadYourWritesFilter(int stickySeconds, Set<String> readOnlyPostPaths) {
+        this.stickySeconds = stickySeconds;
+        this.readOnlyPostPaths = readOnlyPostPaths;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean write = !isRead(request);
+        if (write) {
+            Cookie cookie = new Cookie(READ_PRIMARY_COOKIE, "true");
+            cookie.setMaxAge(stickySeconds);
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        ReadRouting.holdOnPrimary(write || WebUtils.getCookie(request, READ_PRIMARY_COOKIE) != null);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadRouting.release();
+        }
+    }
+
+    private boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (HttpMethod.POST.matches(method)) {
+            return readOnlyPostPaths.contains(urlPathHelper.getPathWithinApplication(request));
+        }
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+}
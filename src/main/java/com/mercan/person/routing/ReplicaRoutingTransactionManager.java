@@ -0,0 +1,59 @@
+package com.mercan.person.routing;
+
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * A JPA transaction manager that tells {@link ReplicaRoutingDataSource} whether the transaction it begins is
+ * read-only. The flag has to be published here: the connection is borrowed while the transaction begins, before
+ * Spring exposes the transaction's own read-only flag.
+ * <p>
+ * An entity manager opened in view outlives its transactions and would keep their connection for the rest of the
+ * request, so a write following a read would run on the replica. It is disconnected after each transaction instead,
+ * and the next one borrows a connection of its own route.
+ * <p>
+ * A transaction on a replica still reads the second-level cache but does not put into it: a lagging replica's rows
+ * would otherwise be served from the cache to clients held on the primary, and for longer than the replica lags.
+ */
+public class ReplicaRoutingTransactionManager extends JpaTransactionManager {
+
+    public ReplicaRoutingTransactionManager(EntityManagerFactory entityManagerFactory) {
+        super(entityManagerFactory);
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        ReadRouting.beginTransaction(definition.isReadOnly());
+        try {
+            super.doBegin(transaction, definition);
+            EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+            // set on every transaction, as an entity manager opened in view serves both routes; the JPA property
+            // rather than the Hibernate cache mode, which each find derives from it again
+            holder.getEntityManager().setProperty(AvailableSettings.JPA_SHARED_CACHE_STORE_MODE,
+                    ReadRouting.routesToReplica() ? CacheStoreMode.BYPASS : CacheStoreMode.USE);
+        } catch (RuntimeException | Error e) {
+            ReadRouting.endTransaction();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+            EntityManagerHolder inView = (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+            if (inView != null) {
+                inView.getEntityManager().unwrap(Session.class).disconnect();
+            }
+        } finally {
+            ReadRouting.endTransaction();
+        }
+    }
+}
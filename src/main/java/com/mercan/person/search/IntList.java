@@ -0,0 +1,45 @@
+package com.mercan.person.search;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, used for posting lists so that an index over millions of names holds
+ * four bytes per entry instead of a boxed {@code Integer} and a reference.
+ */
+class IntList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] elements = new int[INITIAL_CAPACITY];
+    private int size;
+
+    void add(int element) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size + (size >> 1) + 1);
+        }
+        elements[size++] = element;
+    }
+
+    int get(int index) {
+        return elements[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int last() {
+        return elements[size - 1];
+    }
+
+    /**
+     * Binary search, for lists kept in ascending order.
+     */
+    boolean contains(int element) {
+        return Arrays.binarySearch(elements, 0, size, element) >= 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -0,0 +1,111 @@
+package com.mercan.person.search;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive longs to non-negative ints, used for id to ordinal lookups so that an
+ * index over millions of names holds no boxed {@code Long} and {@code Integer} per entry. Absent keys read as
+ * {@link #ABSENT}.
+ */
+class LongIntMap {
+
+    static final int ABSENT = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] values = newValues(INITIAL_CAPACITY);
+    private int size;
+
+    int get(long key) {
+        return values[slot(key)];
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != ABSENT;
+    }
+
+    void put(long key, int value) {
+        int slot = slot(key);
+        if (values[slot] == ABSENT) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        if (size * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Removes the key, returning the value it had or {@link #ABSENT}. The entries after it in its probe run are
+     * shifted back, so lookups never need tombstones.
+     */
+    int remove(long key) {
+        int slot = slot(key);
+        int value = values[slot];
+        if (value == ABSENT) {
+            return ABSENT;
+        }
+        int mask = keys.length - 1;
+        int free = slot;
+        for (int next = (free + 1) & mask; values[next] != ABSENT; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            // move the entry back unless its home lies cyclically after the free slot, up to where it is now
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        values[free] = ABSENT;
+        size--;
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(values, ABSENT);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != ABSENT && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = newValues(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != ABSENT) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int[] newValues(int capacity) {
+        int[] values = new int[capacity];
+        Arrays.fill(values, ABSENT);
+        return values;
+    }
+
+    /**
+     * Spreads sequential ids, the common case, across the table.
+     */
+    private static int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -0,0 +1,565 @@
+package com.mercan.person.search;
+
+import com.mercan.person.pojo.NameMatch;
+import com.mercan.person.pojo.NameMatchMode;
+import org.apache.commons.codec.language.DoubleMetaphone;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of person names for typo-tolerant and sound-alike lookups.
+ * <p>
+ * Every indexed name gets a dense ordinal. Posting lists map each trigram, and each Double Metaphone code of a
+ * name token, to the ordinals carrying it. Because ordinals are only ever appended, every posting list is sorted.
+ * Names are folded to lower-case ASCII letters first, so a trigram fits in a {@code short} code.
+ * <p>
+ * Trigram posting lists are split by the size of the names' trigram sets. A name of {@code m} trigrams reaching
+ * the similarity threshold {@code t} must share {@code o >= t * (n + m) / (1 + t)} of the query's {@code n}
+ * trigrams, so it appears in at least one of any {@code n - o + 1} of the query's lists for size {@code m}. A
+ * search goes through the sizes the threshold allows and finds each size's candidates in its rarest lists only;
+ * names of the usual size need far fewer lists than the shortest possible name would.
+ * <p>
+ * Changing or removing a name only marks its old ordinal as removed. The index is compacted once removed
+ * ordinals outnumber live ones. Reads share a lock and writes take it exclusively.
+ */
+public class NameIndex {
+
+    /**
+     * Minimum Jaccard similarity of trigram sets for a trigram match, the {@code pg_trgm} default.
+     */
+    public static final double MIN_SIMILARITY = 0.3;
+
+    private static final int ALPHABET = 27;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final short[] NO_TRIGRAMS = new short[0];
+    private static final IntList EMPTY = new IntList();
+    private static final Comparator<IntList> BY_SIZE = Comparator.comparingInt(IntList::size);
+    /**
+     * How many counted lists a name must be in before it is followed as a candidate, see {@link #countOverlaps}.
+     */
+    private static final int CANDIDATE_OVERLAP = 3;
+    private static final Comparator<Scored> WORST_FIRST = Comparator.<Scored>comparingDouble(scored -> scored.score)
+            .thenComparing(Comparator.<Scored>comparingInt(scored -> scored.ordinal).reversed());
+
+    private final DoubleMetaphone doubleMetaphone = new DoubleMetaphone();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Count arrays are as long as the index, so they are pooled and reused rather than kept per thread: with a
+     * thread per request a thread-local would allocate one for every search.
+     */
+    private final Queue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Posting lists by trigram code, then by the trigram set size of the names in them.
+     */
+    private final IntList[][] trigramPostings = new IntList[ALPHABET * ALPHABET * ALPHABET][];
+    private final Map<String, IntList> phoneticPostings = new HashMap<>();
+    private final LongIntMap ordinals = new LongIntMap();
+    private final BitSet removed = new BitSet();
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private String[] firstNames = new String[INITIAL_CAPACITY];
+    private String[] lastNames = new String[INITIAL_CAPACITY];
+    private short[][] trigrams = new short[INITIAL_CAPACITY][];
+    private int ordinalCount;
+    private int largestTrigramCount;
+
+    /**
+     * Indexes the name of a person, replacing any name indexed for the same id before.
+     */
+    public void put(long id, String firstName, String lastName) {
+        lock.writeLock().lock();
+        try {
+            int previous = ordinals.get(id);
+            if (previous != LongIntMap.ABSENT) {
+                if (firstName.equals(firstNames[previous]) && lastName.equals(lastNames[previous])) {
+                    return;
+                }
+                removed.set(previous);
+            }
+            ordinals.put(id, append(id, firstName, lastName));
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the name of a person unless a name is already indexed for the id; returns whether it was added.
+     */
+    public boolean putIfAbsent(long id, String firstName, String lastName) {
+        lock.writeLock().lock();
+        try {
+            if (ordinals.containsKey(id)) {
+                return false;
+            }
+            ordinals.put(id, append(id, firstName, lastName));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinals.remove(id);
+            if (ordinal != LongIntMap.ABSENT) {
+                removed.set(ordinal);
+                compactIfSparse();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} names best matching the query, most similar first.
+     * {@link NameMatchMode#TRIGRAM} returns names whose trigram similarity to the query is at least
+     * {@link #MIN_SIMILARITY}. {@link NameMatchMode#PHONETIC} returns names where every query token sounds like
+     * one of the name tokens, ranked by trigram similarity.
+     */
+    public List<NameMatch> search(String query, NameMatchMode mode, int limit) {
+        List<String> tokens = tokens(query);
+        if (tokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        short[] queryTrigrams = trigrams(tokens);
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+            if (mode == NameMatchMode.PHONETIC) {
+                for (int ordinal : soundAlikes(tokens)) {
+                    offer(best, limit, ordinal, similarity(queryTrigrams, trigrams[ordinal]));
+                }
+            } else {
+                trigramSearch(queryTrigrams, best, limit);
+            }
+            return toMatches(best);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int append(long id, String firstName, String lastName) {
+        int ordinal = ordinalCount++;
+        if (ordinal == ids.length) {
+            int capacity = ordinal + (ordinal >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            firstNames = Arrays.copyOf(firstNames, capacity);
+            lastNames = Arrays.copyOf(lastNames, capacity);
+            trigrams = Arrays.copyOf(trigrams, capacity);
+        }
+        ids[ordinal] = id;
+        firstNames[ordinal] = firstName;
+        lastNames[ordinal] = lastName;
+
+        List<String> tokens = tokens(firstName + " " + lastName);
+        short[] nameTrigrams = trigrams(tokens);
+        trigrams[ordinal] = nameTrigrams;
+        int size = nameTrigrams.length;
+        largestTrigramCount = Math.max(largestTrigramCount, size);
+        for (short trigram : nameTrigrams) {
+            IntList[] bySize = trigramPostings[trigram];
+            if (bySize == null || bySize.length <= size) {
+                bySize = bySize == null ? new IntList[size + 1] : Arrays.copyOf(bySize, size + 1);
+                trigramPostings[trigram] = bySize;
+            }
+            if (bySize[size] == null) {
+                bySize[size] = new IntList();
+            }
+            bySize[size].add(ordinal);
+        }
+        for (String token : tokens) {
+            for (String code : phoneticCodes(token)) {
+                IntList postings = phoneticPostings.computeIfAbsent(code, key -> new IntList());
+                // two tokens of one name can share a code, keep the ordinal once
+                if (postings.size() == 0 || postings.last() != ordinal) {
+                    postings.add(ordinal);
+                }
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * Rebuilds the index from its live names once removed ordinals outnumber them, so memory and posting list
+     * lengths stay proportional to the number of people.
+     */
+    private void compactIfSparse() {
+        int removedCount = removed.cardinality();
+        if (removedCount < INITIAL_CAPACITY || removedCount <= ordinals.size()) {
+            return;
+        }
+        long[] liveIds = new long[ordinals.size()];
+        String[] liveFirstNames = new String[liveIds.length];
+        String[] liveLastNames = new String[liveIds.length];
+        int live = 0;
+        for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+            if (!removed.get(ordinal)) {
+                liveIds[live] = ids[ordinal];
+                liveFirstNames[live] = firstNames[ordinal];
+                liveLastNames[live] = lastNames[ordinal];
+                live++;
+            }
+        }
+        Arrays.fill(trigramPostings, null);
+        phoneticPostings.clear();
+        ordinals.clear();
+        removed.clear();
+        Arrays.fill(firstNames, null);
+        Arrays.fill(lastNames, null);
+        Arrays.fill(trigrams, null);
+        ordinalCount = 0;
+        largestTrigramCount = 0;
+        for (int i = 0; i < live; i++) {
+            ordinals.put(liveIds[i], append(liveIds[i], liveFirstNames[i], liveLastNames[i]));
+        }
+    }
+
+    /**
+     * Counts, per name, how many query trigrams it shares, one name size at a time, and offers every name reaching
+     * the threshold. A count is the exact overlap, so no candidate needs to be verified against its stored trigrams.
+     */
+    private void trigramSearch(short[] queryTrigrams, PriorityQueue<Scored> best, int limit) {
+        int n = queryTrigrams.length;
+        IntList[] lists = new IntList[n];
+        Scratch pooled = scratchPool.poll();
+        Scratch scratch = pooled == null ? new Scratch() : pooled;
+        try {
+            scratch.reset(ordinalCount);
+            for (int size = 1; size <= largestTrigramCount; size++) {
+                int minOverlap = minOverlap(n, size);
+                // names too short or too long for the threshold need more trigrams than they or the query have
+                if (minOverlap > size || minOverlap > n) {
+                    continue;
+                }
+                boolean indexed = false;
+                for (int i = 0; i < n; i++) {
+                    IntList[] bySize = trigramPostings[queryTrigrams[i]];
+                    IntList postings = bySize == null || bySize.length <= size ? null : bySize[size];
+                    lists[i] = postings == null ? EMPTY : postings;
+                    indexed |= postings != null;
+                }
+                if (indexed) {
+                    Arrays.sort(lists, BY_SIZE);
+                    countOverlaps(n, size, minOverlap, lists, scratch, best, limit);
+                }
+            }
+        } finally {
+            scratchPool.offer(scratch);
+        }
+    }
+
+    /**
+     * Finds the names of one size sharing at least {@code minOverlap} trigrams with the query. Any
+     * {@code n - minOverlap + 1} lists hold every such name, but counting a few lists beyond that in full raises
+     * the count a name needs there before it becomes a candidate, which leaves far fewer candidates to follow
+     * through the longest lists. Those only add to the counts of the candidates still able to reach
+     * {@code minOverlap}, by binary search when there are few of them and by scanning otherwise.
+     */
+    private void countOverlaps(int n, int size, int minOverlap, IntList[] lists, Scratch scratch,
+                               PriorityQueue<Scored> best, int limit) {
+        short[] counts = scratch.counts;
+        int counted = Math.min(n, n - minOverlap + CANDIDATE_OVERLAP);
+        int candidateOverlap = minOverlap - (n - counted);
+        scratch.touchedCount = 0;
+        for (int i = 0; i < counted; i++) {
+            IntList list = lists[i];
+            for (int j = 0; j < list.size(); j++) {
+                int ordinal = list.get(j);
+                if (++counts[ordinal] == candidateOverlap) {
+                    scratch.touch(ordinal);
+                }
+            }
+        }
+        int[] candidates = scratch.touched;
+        int candidateCount = scratch.touchedCount;
+        for (int i = counted; i < lists.length && candidateCount > 0; i++) {
+            IntList list = lists[i];
+            if ((long) candidateCount * (32 - Integer.numberOfLeadingZeros(list.size())) < list.size()) {
+                for (int j = 0; j < candidateCount; j++) {
+                    if (list.contains(candidates[j])) {
+                        counts[candidates[j]]++;
+                    }
+                }
+            } else {
+                for (int j = 0; j < list.size(); j++) {
+                    counts[list.get(j)]++;
+                }
+            }
+            int needed = minOverlap - (lists.length - i - 1);
+            int kept = 0;
+            for (int j = 0; j < candidateCount; j++) {
+                if (counts[candidates[j]] >= needed) {
+                    candidates[kept++] = candidates[j];
+                }
+            }
+            candidateCount = kept;
+        }
+        for (int j = 0; j < candidateCount; j++) {
+            int ordinal = candidates[j];
+            int overlap = counts[ordinal];
+            if (overlap >= minOverlap && !removed.get(ordinal)) {
+                double similarity = (double) overlap / (n + size - overlap);
+                if (similarity >= MIN_SIMILARITY) {
+                    offer(best, limit, ordinal, similarity);
+                }
+            }
+        }
+    }
+
+    /**
+     * The fewest trigrams a name of {@code size} trigrams shares with a query of {@code n} trigrams when their
+     * similarity {@code o / (n + size - o)} reaches {@link #MIN_SIMILARITY}.
+     */
+    static int minOverlap(int n, int size) {
+        // the tolerance keeps a bound that is a whole number in exact arithmetic from rounding up
+        return (int) Math.ceil(MIN_SIMILARITY * (n + size) / (1 + MIN_SIMILARITY) - 1e-9);
+    }
+
+    /**
+     * Returns the live ordinals of names having, for every query token, a token with the same primary or
+     * alternate Double Metaphone code.
+     */
+    private int[] soundAlikes(List<String> tokens) {
+        int[] result = null;
+        for (String token : tokens) {
+            int[] matches = new int[0];
+            for (String code : phoneticCodes(token)) {
+                IntList postings = phoneticPostings.get(code);
+                if (postings != null) {
+                    matches = union(matches, postings.toArray());
+                }
+            }
+            result = result == null ? matches : intersection(result, matches);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return distinctLive(result, result.length);
+    }
+
+    private int[] distinctLive(int[] sorted, int length) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            int ordinal = sorted[i];
+            if ((count == 0 || sorted[count - 1] != ordinal) && !removed.get(ordinal)) {
+                sorted[count++] = ordinal;
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    private void offer(PriorityQueue<Scored> best, int limit, int ordinal, double score) {
+        if (best.size() < limit) {
+            best.add(new Scored(ordinal, score));
+        } else if (WORST_FIRST.compare(best.peek(), new Scored(ordinal, score)) < 0) {
+            best.poll();
+            best.add(new Scored(ordinal, score));
+        }
+    }
+
+    private List<NameMatch> toMatches(PriorityQueue<Scored> best) {
+        List<NameMatch> matches = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Scored scored = best.poll();
+            matches.add(NameMatch.builder()
+                    .id(ids[scored.ordinal])
+                    .firstName(firstNames[scored.ordinal])
+                    .lastName(lastNames[scored.ordinal])
+                    .score(scored.score)
+                    .build());
+        }
+        Collections.reverse(matches);
+        return matches;
+    }
+
+    private Set<String> phoneticCodes(String token) {
+        Set<String> codes = new LinkedHashSet<>(2);
+        String primary = doubleMetaphone.doubleMetaphone(token);
+        String alternate = doubleMetaphone.doubleMetaphone(token, true);
+        if (primary != null && !primary.isEmpty()) {
+            codes.add(primary);
+        }
+        if (alternate != null && !alternate.isEmpty()) {
+            codes.add(alternate);
+        }
+        return codes;
+    }
+
+    /**
+     * Folds a name to lower-case ASCII letter tokens: accents are dropped, apostrophes join and any other
+     * character separates, so "O'Brien-Núñez" becomes {@code [obrien, nunez]}.
+     */
+    static List<String> tokens(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = Character.toLowerCase(decomposed.charAt(i));
+            if (c >= 'a' && c <= 'z') {
+                token.append(c);
+            } else if (c != '\'' && c != '’' && Character.getType(c) != Character.NON_SPACING_MARK && token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the sorted, distinct trigram codes of the tokens, each padded with two leading blanks and one
+     * trailing blank like {@code pg_trgm} so that word starts weigh more than word ends.
+     */
+    static short[] trigrams(List<String> tokens) {
+        if (tokens.isEmpty()) {
+            return NO_TRIGRAMS;
+        }
+        int total = 0;
+        for (String token : tokens) {
+            total += token.length() + 1;
+        }
+        short[] codes = new short[total];
+        int count = 0;
+        for (String token : tokens) {
+            int first = 0;
+            int second = 0;
+            for (int i = 0; i <= token.length(); i++) {
+                int third = i < token.length() ? token.charAt(i) - 'a' + 1 : 0;
+                codes[count++] = (short) ((first * ALPHABET + second) * ALPHABET + third);
+                first = second;
+                second = third;
+            }
+        }
+        Arrays.sort(codes);
+        int distinct = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (i == 0 || codes[i] != codes[distinct - 1]) {
+                codes[distinct++] = codes[i];
+            }
+        }
+        return Arrays.copyOf(codes, distinct);
+    }
+
+    /**
+     * Jaccard similarity of two sorted trigram sets.
+     */
+    static double similarity(short[] left, short[] right) {
+        int overlap = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] == right[j]) {
+                overlap++;
+                i++;
+                j++;
+            } else if (left[i] < right[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = left.length + right.length - overlap;
+        return union == 0 ? 0 : (double) overlap / union;
+    }
+
+    private static int[] union(int[] left, int[] right) {
+        int[] result = new int[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < left.length || j < right.length) {
+            int next;
+            if (j == right.length || (i < left.length && left[i] <= right[j])) {
+                next = left[i++];
+            } else {
+                next = right[j++];
+            }
+            if (count == 0 || result[count - 1] != next) {
+                result[count++] = next;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] intersection(int[] left, int[] right) {
+        int[] result = new int[Math.min(left.length, right.length)];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] == right[j]) {
+                result[count++] = left[i];
+                i++;
+                j++;
+            } else if (left[i] < right[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Overlap counters borrowed from the pool for one search, so a search allocates nothing proportional to the
+     * index size. A search counts in most lists in full, so the counters are cleared in one pass for the next one.
+     */
+    private static final class Scratch {
+        private short[] counts = new short[0];
+        private int[] touched = new int[INITIAL_CAPACITY];
+        private int touchedCount;
+
+        private void reset(int ordinalCount) {
+            if (counts.length < ordinalCount) {
+                counts = new short[ordinalCount + (ordinalCount >> 3)];
+            } else {
+                Arrays.fill(counts, (short) 0);
+            }
+        }
+
+        private void touch(int ordinal) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = ordinal;
+        }
+    }
+
+    private static final class Scored {
+        private final int ordinal;
+        private final double score;
+
+        private Scored(int ordinal, double score) {
+            this.ordinal = ordinal;
+            this.score = score;
+        }
+    }
+}
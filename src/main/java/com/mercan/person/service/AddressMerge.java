@@ -0,0 +1,104 @@
+package com.mercan.person.service;
+
+import com.mercan.person.entity.Address;
+import com.mercan.person.exception.ObjectNotFound;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans how a stored address collection is brought in line with a requested one. Stored addresses are matched by id
+ * first, across the whole request, and those left over by street, city, state and postal code; matched ones are
+ * updated only where a value differs, unmatched stored ones are removed and unmatched requested ones inserted.
+ * Applying the plan is left to the caller, so the JPA and the reactive services merge the same way.
+ */
+@Getter
+@Slf4j
+final class AddressMerge {
+    /**
+     * Stored addresses whose values change, each mapped to the requested address holding the new values.
+     */
+    private final Map<Address, Address> updated = new IdentityHashMap<>();
+    private final Set<Address> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Address> inserted = new ArrayList<>();
+
+    private AddressMerge() {
+    }
+
+    /**
+     * Matches {@code requested} against {@code stored}. An id that is not among the stored addresses is rejected with
+     * {@link ObjectNotFound}.
+     */
+    static AddressMerge plan(Long personId, Collection<Address> stored, Collection<Address> requested) {
+        Map<Long, Address> byId = new HashMap<>();
+        Map<List<String>, Deque<Address>> byNaturalKey = new HashMap<>();
+        for (Address address : stored) {
+            byId.put(address.getId(), address);
+            byNaturalKey.computeIfAbsent(naturalKey(address), key -> new ArrayDeque<>()).add(address);
+        }
+
+        AddressMerge merge = new AddressMerge();
+        Set<Address> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+        // ids claim their stored address before any natural key does, wherever they sit in the request
+        for (Address address : requested) {
+            if (address.getId() == null) {
+                continue;
+            }
+            Address match = byId.get(address.getId());
+            if (match == null) {
+                log.error("address {} does not belong to person {}", address.getId(), personId);
+                throw new ObjectNotFound("address", address.getId());
+            }
+            if (matched.add(match) && !naturalKey(address).equals(naturalKey(match))) {
+                merge.updated.put(match, address);
+            }
+        }
+        for (Address address : requested) {
+            if (address.getId() != null) {
+                continue;
+            }
+            Deque<Address> candidates = byNaturalKey.getOrDefault(naturalKey(address), new ArrayDeque<>());
+            Address match = candidates.poll();
+            while (match != null && matched.contains(match)) {
+                match = candidates.poll();
+            }
+            if (match != null) {
+                matched.add(match);
+            } else {
+                merge.inserted.add(address);
+            }
+        }
+        for (Address address : stored) {
+            if (!matched.contains(address)) {
+                merge.removed.add(address);
+            }
+        }
+        return merge;
+    }
+
+    boolean isEmpty() {
+        return updated.isEmpty() && removed.isEmpty() && inserted.isEmpty();
+    }
+
+    static void copy(Address from, Address to) {
+        to.setStreet(from.getStreet());
+        to.setCity(from.getCity());
+        to.setState(from.getState());
+        to.setPostalCode(from.getPostalCode());
+    }
+
+    private static List<String> naturalKey(Address address) {
+        return Arrays.asList(address.getStreet(), address.getCity(), address.getState(), address.getPostalCode());
+    }
+}
@@ -1,68 +1,187 @@
 package com.mercan.person.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.mercan.person.entity.Address;
 import com.mercan.person.entity.Person;
 import com.mercan.person.exception.ObjectNotFound;
+import com.mercan.person.exception.PreconditionFailed;
 import com.mercan.person.repository.AddressRepository;
+import com.mercan.person.repository.AddressRepository.AddressLocation;
 import com.mercan.person.repository.PersonRepository;
+import com.mercan.person.service.ReportAggregates.Footprint;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import static com.mercan.person.constants.PersonServiceConstants.ADDRESS_CACHE;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_CACHE;
+import static com.mercan.person.constants.PersonServiceConstants.READ_FROM_REPLICA;
+import static com.mercan.person.util.Transactions.afterCommit;
+
+/**
+ * Reads and writes addresses with single statements scoped to the person, so an address write never loads the
+ * person first. Those statements bypass Hibernate's second-level cache, see {@link AddressRepository}, so each write
+ * evicts the person, its address ids and the address it touched, once right away and again after commit, when a
+ * concurrent reader may have cached the rows as they were before it.
+ * <p>
+ * Every address write bumps the person's version first, which also locks the person against concurrent address
+ * writes. The locations of its addresses are read once after that, and the reporting aggregates are updated from them
+ * and the written values rather than from a second read.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AddressService {
+    static final Set<String> PATCHABLE_FIELDS = new HashSet<>(Arrays.asList("street", "city", "state", "postalCode"));
+
     private final AddressRepository addressRepository;
     private final PersonRepository personRepository;
+    private final MergePatcher mergePatcher;
+    private final ReportAggregates reportAggregates;
+    private final EntityManagerFactory entityManagerFactory;
 
+    @Cacheable(cacheNames = ADDRESS_CACHE, key = "#personId", unless = READ_FROM_REPLICA)
+    @Transactional(readOnly = true)
     public List<Address> getAddress(Long personId) {
-        if (!personRepository.existsById(personId)) {
+        List<Address> addresses = addressRepository.findAllByExistingPersonId(personId);
+        if (addresses.isEmpty()) {
             log.error("person is not found for id {}", personId);
             throw new ObjectNotFound("personId ", personId);
         }
-        return addressRepository.findAllByPersonId(personId);
+        return addresses.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = ADDRESS_CACHE, key = "#personId"),
+            @CacheEvict(cacheNames = PERSON_CACHE, key = "#personId")})
+    @Transactional
     public Address createAddress(Long personId, Address address) {
-        Person person = personRepository.findById(personId).orElseThrow(() -> {
+        // bumping the version also proves the person exists and locks it against a concurrent delete
+        if (personRepository.incrementVersion(personId) == 0) {
             log.error("person is not found for id {}", personId);
-            return new ObjectNotFound("person ", personId);
-        });
-
-        address.setPerson(person);
-        return addressRepository.save(address);
+            throw new ObjectNotFound("person ", personId);
+        }
+        evictCached(personId, null);
+        List<AddressLocation> locations = addressRepository.findLocationsByPersonId(personId);
+        address.setPerson(personRepository.getOne(personId));
+        Address createdAddress = addressRepository.save(address);
+        reportAggregates.change(Footprint.ofLocations(locations), Footprint.ofLocations(locations, null, createdAddress));
+        return createdAddress;
     }
 
-    public Address updateAddress(Long personId, Long addressId, Address addressRequested) {
-
-        if (!personRepository.existsById(personId)) {
-            log.error("person is not found for id {}", personId);
-            throw new ObjectNotFound("person ", personId);
+    /**
+     * Updates an address in place. A non-null {@code expectedVersion} must match the person's current version,
+     * the ETag clients see on the address list, otherwise nothing is written and {@link PreconditionFailed} is
+     * thrown. The check and the version bump are one compare-and-set statement, so no lock is held across a
+     * read.
+     */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = ADDRESS_CACHE, key = "#personId"),
+            @CacheEvict(cacheNames = PERSON_CACHE, key = "#personId")})
+    @Transactional
+    public Address updateAddress(Long personId, Long addressId, Address addressRequested, Long expectedVersion) {
+        bumpVersion(personId, expectedVersion);
+        List<AddressLocation> locations = addressRepository.findLocationsByPersonId(personId);
+        int updated = addressRepository.updateByIdAndPersonId(addressId, personId,
+                addressRequested.getStreet(), addressRequested.getCity(),
+                addressRequested.getState(), addressRequested.getPostalCode());
+        if (updated == 0) {
+            log.error("address is not found for addressId {} personId {}", addressId, personId);
+            throw new ObjectNotFound("address ", addressId);
         }
-        return addressRepository.findById(addressId).map(address -> {
-            address.setCity(addressRequested.getCity());
-            address.setState(addressRequested.getState());
-            address.setPostalCode(addressRequested.getPostalCode());
-            address.setStreet(addressRequested.getStreet());
-            return addressRepository.save(address);
-        }).orElseThrow(() -> {
-            log.error("address is not found for id {}", addressId);
+        evictCached(personId, addressId);
+        reportAggregates.change(Footprint.ofLocations(locations), Footprint.ofLocations(locations, addressId, addressRequested));
+        addressRequested.setId(addressId);
+        return addressRequested;
+    }
+
+    /**
+     * Applies a JSON Merge Patch to an address, writing only the patched columns. {@code expectedVersion} is
+     * checked against the person's version exactly as for {@link #updateAddress}.
+     */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = ADDRESS_CACHE, key = "#personId"),
+            @CacheEvict(cacheNames = PERSON_CACHE, key = "#personId")})
+    @Transactional
+    public Address patchAddress(Long personId, Long addressId, JsonNode patch, Long expectedVersion) {
+        bumpVersion(personId, expectedVersion);
+        Address storedAddress = addressRepository.findByIdAndPersonId(addressId, personId).orElseThrow(() -> {
+            log.error("address is not found for addressId {} personId {}", addressId, personId);
             return new ObjectNotFound("address ", addressId);
         });
-
+        List<AddressLocation> locations = addressRepository.findLocationsByPersonId(personId);
+        mergePatcher.apply(storedAddress, patch, PATCHABLE_FIELDS);
+        evictCached(personId, null);
+        reportAggregates.change(Footprint.ofLocations(locations), Footprint.ofLocations(locations, addressId, storedAddress));
+        return storedAddress;
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = ADDRESS_CACHE, key = "#personId"),
+            @CacheEvict(cacheNames = PERSON_CACHE, key = "#personId")})
+    @Transactional
     public void deleteAddress(Long addressId, Long personId) {
-        Address address = addressRepository.findAllByIdAndPersonId(addressId, personId)
-                .orElseThrow(() -> {
-                    log.error("address is not found for addressId {} personId {}", addressId, personId);
-                    return new ObjectNotFound("address", addressId);
-                });
+        personRepository.incrementVersion(personId);
+        List<AddressLocation> locations = addressRepository.findLocationsByPersonId(personId);
+        if (addressRepository.deleteByIdAndPersonId(addressId, personId) == 0) {
+            log.error("address is not found for addressId {} personId {}", addressId, personId);
+            throw new ObjectNotFound("address", addressId);
+        }
+        evictCached(personId, addressId);
+        reportAggregates.change(Footprint.ofLocations(locations), Footprint.ofLocations(locations, addressId, null));
+    }
 
-        addressRepository.delete(address);
+    /**
+     * Bumps the person's version, only from {@code expectedVersion} when one is given. A person that does not
+     * exist is left for the address statement to report.
+     */
+    private void bumpVersion(Long personId, Long expectedVersion) {
+        if (expectedVersion == null) {
+            personRepository.incrementVersion(personId);
+        } else if (personRepository.incrementVersionIfMatches(personId, expectedVersion) == 0) {
+            throw versionMismatchOrNotFound(personId, expectedVersion);
+        }
+    }
 
+    /**
+     * Evicts what the scoped statements changed from the second-level cache: the person, whose version moved, the
+     * ids of its addresses and, when given, the address written.
+     */
+    private void evictCached(Long personId, Long addressId) {
+        Runnable evict = () -> {
+            Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+            cache.evictEntityData(Person.class, personId);
+            cache.evictCollectionData(Person.class.getName() + ".address", personId);
+            if (addressId != null) {
+                cache.evictEntityData(Address.class, addressId);
+            }
+        };
+        evict.run();
+        afterCommit(evict);
+    }
+
+    private RuntimeException versionMismatchOrNotFound(Long personId, Long expectedVersion) {
+        if (!personRepository.findVersionById(personId).isPresent()) {
+            log.error("person is not found for id {}", personId);
+            return new ObjectNotFound("person ", personId);
+        }
+        log.error("person {} is not at version {}", personId, expectedVersion);
+        return new PreconditionFailed("person", personId, expectedVersion);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package com.mercan.person.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercan.person.exception.InvalidRequest;
+import com.mercan.person.validation.RequestValidator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_PATCH_FIELD;
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_PATCH_NOT_OBJECT;
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_PATCH_UNREADABLE;
+
+/**
+ * Applies JSON Merge Patch (RFC 7396) documents to entities: members present in the patch overwrite the target's
+ * properties, {@code null} clears them and absent members are left alone. Only setters of the patched properties
+ * run, so on a managed entity Hibernate sees just those columns as dirty.
+ */
+@Component
+@RequiredArgsConstructor
+public class MergePatcher {
+    private final ObjectMapper objectMapper;
+    private final RequestValidator requestValidator;
+
+    /**
+     * Patches {@code target} in place and validates the result, rejecting the whole patch if it names a property
+     * outside {@code patchable} or leaves the target invalid.
+     */
+    public <T> T apply(T target, JsonNode patch, Set<String> patchable) {
+        if (patch == null || !patch.isObject()) {
+            throw new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_PATCH_NOT_OBJECT));
+        }
+        List<String> errors = new ArrayList<>();
+        for (Iterator<String> fields = patch.fieldNames(); fields.hasNext(); ) {
+            String field = fields.next();
+            if (!patchable.contains(field)) {
+                errors.add(String.format(ERROR_MESSAGE_PATCH_FIELD, field));
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new InvalidRequest(errors);
+        }
+        try {
+            objectMapper.readerForUpdating(target).readValue(patch);
+        } catch (JsonProcessingException e) {
+            throw new InvalidRequest(Collections.singletonList(String.format(ERROR_MESSAGE_PATCH_UNREADABLE, e.getOriginalMessage())));
+        } catch (IOException e) {
+            throw new InvalidRequest(Collections.singletonList(String.format(ERROR_MESSAGE_PATCH_UNREADABLE, e.getMessage())));
+        }
+        errors.addAll(requestValidator.validate(target));
+        if (!errors.isEmpty()) {
+            throw new InvalidRequest(errors);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,49 @@
+package com.mercan.person.service;
+
+import com.mercan.person.repository.PersonRepository;
+import com.mercan.person.routing.ReadRouting;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the number of people in memory so the count can be answered without a {@code SELECT COUNT(*)}.
+ * Writes adjust it incrementally; it is reconciled against the database on startup and on a schedule to
+ * correct any drift from writes that raced a reconciliation or happened outside this instance. The count is always
+ * taken on the primary, as a lagging replica would reconcile it to a stale value.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PersonCountTracker {
+    private final PersonRepository personRepository;
+    private final AtomicLong count = new AtomicLong();
+
+    public long get() {
+        return count.get();
+    }
+
+    public void add(long delta) {
+        count.addAndGet(delta);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${person.count.reconcile-interval-ms}", initialDelayString = "${person.count.reconcile-interval-ms}")
+    public void reconcile() {
+        recount();
+    }
+
+    public long recount() {
+        long exact = ReadRouting.onPrimary(personRepository::count);
+        long previous = count.getAndSet(exact);
+        if (previous != exact) {
+            log.info("person count reconciled from {} to {}", previous, exact);
+        }
+        return exact;
+    }
+}
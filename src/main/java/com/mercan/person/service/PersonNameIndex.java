@@ -0,0 +1,83 @@
+package com.mercan.person.service;
+
+import com.mercan.person.entity.Person;
+import com.mercan.person.pojo.NameMatch;
+import com.mercan.person.pojo.NameMatchMode;
+import com.mercan.person.repository.PersonRepository;
+import com.mercan.person.repository.PersonRepository.PersonName;
+import com.mercan.person.routing.ReadRouting;
+import com.mercan.person.search.NameIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.mercan.person.constants.PersonServiceConstants.NAME_INDEX_CHUNK_SIZE;
+import static com.mercan.person.util.Transactions.afterCommit;
+
+/**
+ * Keeps a {@link NameIndex} of every person's name in step with the person table. It is built from the table on
+ * startup and then updated by {@link PersonService} on each write. Inside a transaction the update waits for the
+ * commit, so a rolled back write never reaches the index. Writes made by other instances are not seen.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PersonNameIndex {
+    private final PersonRepository personRepository;
+    private final NameIndex nameIndex = new NameIndex();
+    private final Set<Long> removedDuringBuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean building;
+
+    public void put(Person person) {
+        afterCommit(() -> nameIndex.put(person.getId(), person.getFirstName(), person.getLastName()));
+    }
+
+    public void remove(Long personId) {
+        afterCommit(() -> {
+            if (building) {
+                removedDuringBuild.add(personId);
+            }
+            nameIndex.remove(personId);
+        });
+    }
+
+    public List<NameMatch> search(String query, NameMatchMode mode, int limit) {
+        return nameIndex.search(query, mode, limit);
+    }
+
+    /**
+     * Loads every name in id chunks. Writes keep flowing meanwhile: a name put by a write is newer than the chunk
+     * row, so chunk rows never replace it, and people removed during the build are skipped. Chunks are read from the
+     * primary, as names missing from a lagging replica would never be indexed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.nanoTime();
+        building = true;
+        try {
+            Long lastId = 0L;
+            List<PersonName> chunk;
+            do {
+                Long afterId = lastId;
+                chunk = ReadRouting.onPrimary(() -> personRepository.findNamesByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, NAME_INDEX_CHUNK_SIZE)));
+                for (PersonName name : chunk) {
+                    if (!removedDuringBuild.contains(name.getId())) {
+                        nameIndex.putIfAbsent(name.getId(), name.getFirstName(), name.getLastName());
+                    }
+                    lastId = name.getId();
+                }
+            } while (chunk.size() == NAME_INDEX_CHUNK_SIZE);
+        } finally {
+            building = false;
+            removedDuringBuild.clear();
+        }
+        log.info("name index built with {} people in {} ms", nameIndex.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -1,58 +1,520 @@
 package com.mercan.person.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mercan.person.entity.Address;
 import com.mercan.person.entity.Person;
+import com.mercan.person.exception.InvalidRequest;
 import com.mercan.person.exception.ObjectNotFound;
+import com.mercan.person.exception.PreconditionFailed;
+import com.mercan.person.pojo.BulkCreateResult;
+import com.mercan.person.pojo.CursorPage;
+import com.mercan.person.pojo.Keyset;
+import com.mercan.person.pojo.NameMatch;
+import com.mercan.person.pojo.NameMatchMode;
+import com.mercan.person.pojo.PersonLookup;
+import com.mercan.person.pojo.PersonSearch;
+import com.mercan.person.pojo.PersonSort;
 import com.mercan.person.repository.PersonRepository;
+import com.mercan.person.routing.ReadRouting;
+import com.mercan.person.service.ReportAggregates.Footprint;
+import com.mercan.person.util.Cursors;
+import com.mercan.person.validation.RequestValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.mercan.person.constants.PersonServiceConstants.ADDRESS_CACHE;
+import static com.mercan.person.constants.PersonServiceConstants.BULK_CHUNK_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.BULK_MAX_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_BULK_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_CURSOR_SORT;
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_INVALID_CURSOR;
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_INVALID_LIMIT;
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_INVALID_NAME_QUERY;
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_LOOKUP_IDS;
+import static com.mercan.person.constants.PersonServiceConstants.EXPORT_CHUNK_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.MAX_PAGE_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.NAME_SEARCH_DEFAULT_LIMIT;
+import static com.mercan.person.constants.PersonServiceConstants.NAME_SEARCH_MAX_LIMIT;
+import static com.mercan.person.constants.PersonServiceConstants.PAGE_CHUNK_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_CACHE;
+import static com.mercan.person.constants.PersonServiceConstants.READ_FROM_REPLICA;
+import static com.mercan.person.util.Transactions.afterCommit;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PersonService {
+    static final Set<String> PATCHABLE_FIELDS = new HashSet<>(Arrays.asList("firstName", "lastName"));
+
     private final PersonRepository personRepository;
+    private final PersonCountTracker personCountTracker;
+    private final RequestValidator requestValidator;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final CacheManager cacheManager;
+    private final MergePatcher mergePatcher;
+    private final PersonNameIndex personNameIndex;
+    private final ReportAggregates reportAggregates;
 
-    public List<Person> getPeople() {
-        return personRepository.findAll();
+    /**
+     * Returns people ordered by id, starting after the given cursor. The page size is capped at
+     * {@code MAX_PAGE_SIZE}, so a call without a limit never loads the whole table.
+     * <p>
+     * Like the other reads it runs in one read-only transaction: Hibernate keeps no snapshots of the loaded people to
+     * dirty check, never flushes, and the JDBC connection is marked read-only.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Person> getPeople(String after, Integer limit) {
+        int pageSize = pageSize(limit);
+        Long afterId = after == null ? 0L : Cursors.decode(after);
+
+        // one extra row tells us whether there is a next page without running a count query
+        List<Person> people = findPage(afterId, pageSize + 1);
+        String nextCursor = null;
+        if (people.size() > pageSize) {
+            people = people.subList(0, pageSize);
+            nextCursor = Cursors.encode(people.get(pageSize - 1).getId());
+        }
+        return CursorPage.<Person>builder()
+                .items(people)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Returns a keyset page of the people matching the search. Matching ids are paged in the database and the page
+     * is then loaded with addresses in one query, so the cost of a page does not grow with how deep it is.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Person> searchPeople(PersonSearch search, String after, Integer limit) {
+        int pageSize = pageSize(limit);
+        Keyset afterKeyset = after == null ? null : Cursors.decodeKeyset(after);
+        if (afterKeyset != null && afterKeyset.getSort() != search.getSort()) {
+            throw new InvalidRequest(Collections.singletonList(String.format(ERROR_MESSAGE_CURSOR_SORT, afterKeyset.getSort().getAttribute())));
+        }
+        if (afterKeyset != null && (afterKeyset.getValue() == null) != (search.getSort() == PersonSort.ID)) {
+            throw new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_INVALID_CURSOR));
+        }
+
+        List<Long> ids = personRepository.searchIds(search, afterKeyset, pageSize + 1);
+        boolean hasNext = ids.size() > pageSize;
+        List<Person> people = findInOrder(hasNext ? ids.subList(0, pageSize) : ids);
+        String nextCursor = null;
+        if (hasNext && !people.isEmpty()) {
+            Person last = people.get(people.size() - 1);
+            nextCursor = Cursors.encode(Keyset.builder().sort(search.getSort()).id(last.getId()).value(sortValue(last, search.getSort())).build());
+        }
+        return CursorPage.<Person>builder()
+                .items(people)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Hands every person with an id greater than {@code afterId} to the consumer in id order. Rows are read in
+     * keyset chunks and the persistence context is cleared after each chunk, so exported rows can be garbage
+     * collected and memory stays flat whatever the table size.
+     */
+    public void exportPeople(Long afterId, Consumer<Person> consumer) {
+        Long lastId = afterId == null ? 0L : afterId;
+        List<Person> chunk;
+        do {
+            chunk = findPage(lastId, EXPORT_CHUNK_SIZE);
+            chunk.forEach(consumer);
+            if (!chunk.isEmpty()) {
+                lastId = chunk.get(chunk.size() - 1).getId();
+            }
+            entityManager.clear();
+        } while (chunk.size() == EXPORT_CHUNK_SIZE);
     }
 
     public Person createPerson(Person person) {
-        return personRepository.save(person);
+        linkAddresses(person);
+        Person createdPerson = personRepository.save(person);
+        personCountTracker.add(1);
+        personNameIndex.put(createdPerson);
+        reportAggregates.change(Footprint.NONE, Footprint.of(createdPerson.getAddress()));
+        return createdPerson;
+    }
+
+    /**
+     * Validates every person and nested address up front and rejects the whole request if any item is invalid.
+     * Valid payloads are persisted in transactions of {@code BULK_CHUNK_SIZE} people, which Hibernate writes
+     * as ordered JDBC batches. Chunks committed before a database failure stay committed.
+     */
+    public BulkCreateResult createPeople(List<Person> people) {
+        if (people == null || people.isEmpty() || people.size() > BULK_MAX_SIZE) {
+            throw new InvalidRequest(Collections.singletonList(String.format(ERROR_MESSAGE_BULK_SIZE, BULK_MAX_SIZE)));
+        }
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < people.size(); i++) {
+            Person person = people.get(i);
+            errors.addAll(requestValidator.validate("[" + i + "]", person));
+            if (person.getAddress() != null) {
+                errors.addAll(addressErrors("[" + i + "].address", person.getAddress()));
+            }
+        }
+        if (!errors.isEmpty()) {
+            log.error("bulk create rejected with {} errors", errors.size());
+            throw new InvalidRequest(errors);
+        }
+
+        List<Long> ids = new ArrayList<>(people.size());
+        for (int from = 0; from < people.size(); from += BULK_CHUNK_SIZE) {
+            List<Person> chunk = people.subList(from, Math.min(from + BULK_CHUNK_SIZE, people.size()));
+            ids.addAll(transactionTemplate.execute(status -> saveChunk(chunk)));
+            entityManager.clear();
+            personCountTracker.add(chunk.size());
+            chunk.forEach(personNameIndex::put);
+            chunk.forEach(person -> reportAggregates.change(Footprint.NONE, Footprint.of(person.getAddress())));
+        }
+        return BulkCreateResult.builder()
+                .created(ids.size())
+                .ids(ids)
+                .build();
     }
 
-    public Person updatePerson(Long personId, Person personRequest) {
+    /**
+     * Replaces a person. A non-null {@code expectedVersion} must match the stored version or
+     * {@link PreconditionFailed} is thrown; a write racing this one in between the read and the update is detected
+     * by the versioned update and surfaces as an {@code OptimisticLockingFailureException}.
+     * <p>
+     * A request without addresses leaves the stored ones alone, otherwise they are merged as in
+     * {@link #replaceAddresses}.
+     */
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = PERSON_CACHE, key = "#personId"),
+            @CacheEvict(cacheNames = ADDRESS_CACHE, key = "#personId")})
+    public Person updatePerson(Long personId, Person personRequest, Long expectedVersion) {
+        Person storedPerson = findForUpdate(personId, expectedVersion);
+        if (personRequest.getAddress() != null) {
+            validateAddresses("address", personRequest.getAddress());
+            Footprint before = Footprint.of(storedPerson.getAddress());
+            mergeAddresses(storedPerson, personRequest.getAddress());
+            reportAggregates.change(before, Footprint.of(storedPerson.getAddress()));
+        }
+        storedPerson.setFirstName(personRequest.getFirstName());
+        storedPerson.setLastName(personRequest.getLastName());
+        personNameIndex.put(storedPerson);
+        // flush inside the transaction so the returned version is the one just written
+        return personRepository.saveAndFlush(storedPerson);
+    }
 
-        return personRepository.findById(personId).map(storedPerson -> {
-            storedPerson.setFirstName(personRequest.getFirstName());
-            storedPerson.setLastName(personRequest.getLastName());
-            storedPerson.setAddress(personRequest.getAddress());
-            return personRepository.save(storedPerson);
-        }).orElseThrow(() -> {
+    /**
+     * Replaces the addresses of a person with the given ones. Incoming addresses are matched to stored ones by id,
+     * or by street, city, state and postal code when they have none, so only new addresses are inserted, only
+     * changed ones updated and only missing ones deleted; Hibernate batches each kind. An id that does not belong
+     * to the person is rejected with {@link ObjectNotFound}.
+     */
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = PERSON_CACHE, key = "#personId"),
+            @CacheEvict(cacheNames = ADDRESS_CACHE, key = "#personId")})
+    public List<Address> replaceAddresses(Long personId, List<Address> addresses, Long expectedVersion) {
+        Person storedPerson = findForUpdate(personId, expectedVersion);
+        validateAddresses("", addresses);
+        Footprint before = Footprint.of(storedPerson.getAddress());
+        mergeAddresses(storedPerson, addresses);
+        reportAggregates.change(before, Footprint.of(storedPerson.getAddress()));
+        personRepository.saveAndFlush(storedPerson);
+        return new ArrayList<>(storedPerson.getAddress());
+    }
+
+    /**
+     * Applies a JSON Merge Patch to a person. Only the patched columns are written, and nothing at all when the
+     * patch leaves every value as it was. Addresses are patched through their own resource.
+     */
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = PERSON_CACHE, key = "#personId"),
+            @CacheEvict(cacheNames = ADDRESS_CACHE, key = "#personId")})
+    public Person patchPerson(Long personId, JsonNode patch, Long expectedVersion) {
+        Person storedPerson = personRepository.findById(personId).orElseThrow(() -> {
             log.error("person is not found for id {}", personId);
             return new ObjectNotFound("person", personId);
         });
+        checkVersion(storedPerson, expectedVersion);
+        mergePatcher.apply(storedPerson, patch, PATCHABLE_FIELDS);
+        personNameIndex.put(storedPerson);
+        // flush inside the transaction so the returned version is the one just written
+        return personRepository.saveAndFlush(storedPerson);
+    }
 
+    /**
+     * Unconditional {@link #updatePerson} for internal callers that would rather win than fail: an update that loses
+     * a race with a concurrent writer is re-read and re-applied, up to {@code maxAttempts} times in total, each
+     * attempt in its own transaction. Must not be called from inside a transaction, which a failed attempt would
+     * mark rollback-only.
+     */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = PERSON_CACHE, key = "#personId"),
+            @CacheEvict(cacheNames = ADDRESS_CACHE, key = "#personId")})
+    public Person updatePersonWithRetry(Long personId, Person personRequest, int maxAttempts) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> updatePerson(personId, personRequest, null));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.info("update of person {} lost a race, attempt {} of {}", personId, attempt, maxAttempts);
+                // drop the stale copy so the next attempt reads the winner's state
+                entityManager.clear();
+            }
+        }
     }
 
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = PERSON_CACHE, key = "#personId"),
+            @CacheEvict(cacheNames = ADDRESS_CACHE, key = "#personId")})
     public void delete(Long personId) {
-        Person person = personRepository.findById(personId).orElseThrow(() -> {
+        // the addresses are needed for the reporting aggregates and would be loaded by the cascading delete anyway;
+        // reading them in the deleting transaction also reads them from the primary
+        Person person = personRepository.findWithAddressById(personId).orElseThrow(() -> {
             log.error("person is not found for id {}", personId);
             return new ObjectNotFound("person", personId);
         });
         personRepository.delete(person);
+        afterCommit(() -> personCountTracker.add(-1));
+        personNameIndex.remove(personId);
+        reportAggregates.change(Footprint.of(person.getAddress()), Footprint.NONE);
     }
 
+    @Cacheable(cacheNames = PERSON_CACHE, key = "#personId", unless = READ_FROM_REPLICA)
+    @Transactional(readOnly = true)
     public Person getPerson(Long personId) {
-        return personRepository.findById(personId).orElseThrow(() -> {
+        return personRepository.findWithAddressById(personId).orElseThrow(() -> {
+            log.error("person is not found for id {}", personId);
+            return new ObjectNotFound("person", personId);
+        });
+    }
+
+    /**
+     * Returns the people with the given ids, once each and in the order first asked for, along with the ids that
+     * matched no one. Cached people answer without a query; the rest are loaded with their addresses by id,
+     * {@code PAGE_CHUNK_SIZE} at a time, so a few dozen ids cost one round trip rather than one each, and are cached
+     * as {@link #getPerson} would cache them.
+     */
+    @Transactional(readOnly = true)
+    public PersonLookup lookupPeople(List<Long> ids) {
+        if (ids == null || ids.isEmpty() || ids.size() > MAX_PAGE_SIZE || ids.contains(null)) {
+            throw new InvalidRequest(Collections.singletonList(String.format(ERROR_MESSAGE_LOOKUP_IDS, MAX_PAGE_SIZE)));
+        }
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        Cache cache = cacheManager.getCache(PERSON_CACHE);
+        Map<Long, Person> found = new HashMap<>();
+        List<Long> uncached = new ArrayList<>(requested.size());
+        for (Long id : requested) {
+            Person cached = cache == null ? null : cache.get(id, Person.class);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                uncached.add(id);
+            }
+        }
+        boolean cacheable = cache != null && !ReadRouting.readFromReplica();
+        for (int from = 0; from < uncached.size(); from += PAGE_CHUNK_SIZE) {
+            List<Long> chunk = uncached.subList(from, Math.min(from + PAGE_CHUNK_SIZE, uncached.size()));
+            for (Person person : personRepository.findDistinctByIdInOrderByIdAsc(chunk)) {
+                found.put(person.getId(), person);
+                if (cacheable) {
+                    cache.put(person.getId(), person);
+                }
+            }
+        }
+
+        List<Person> people = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            Person person = found.get(id);
+            if (person != null) {
+                people.add(person);
+            } else {
+                missing.add(id);
+            }
+        }
+        return PersonLookup.builder()
+                .people(people)
+                .missing(missing)
+                .build();
+    }
+
+    /**
+     * Returns the version of a person, which is also the version of its addresses. A cached person answers
+     * without a query, otherwise only the version column is read.
+     */
+    public Long getPersonVersion(Long personId) {
+        Cache cache = cacheManager.getCache(PERSON_CACHE);
+        Person cached = cache == null ? null : cache.get(personId, Person.class);
+        if (cached != null) {
+            return cached.getVersion();
+        }
+        return personRepository.findVersionById(personId).orElseThrow(() -> {
+            log.error("person is not found for id {}", personId);
+            return new ObjectNotFound("person", personId);
+        });
+    }
+
+    /**
+     * Returns the people whose name best matches the query, from the in-memory name index and without a query.
+     */
+    public List<NameMatch> searchNames(String query, NameMatchMode mode, Integer limit) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_INVALID_NAME_QUERY));
+        }
+        if (limit != null && limit < 1) {
+            throw new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_INVALID_LIMIT));
+        }
+        return personNameIndex.search(query, mode, limit == null ? NAME_SEARCH_DEFAULT_LIMIT : Math.min(limit, NAME_SEARCH_MAX_LIMIT));
+    }
+
+    /**
+     * Answers from the in-memory count unless {@code exact} is set, in which case the table is counted and the
+     * in-memory value is reconciled with the result. There is no transaction here: the in-memory answer needs no
+     * connection, and the exact count is a single read-only statement that must run on the primary.
+     */
+    public long getPersonCount(boolean exact) {
+        return exact ? personCountTracker.recount() : personCountTracker.get();
+    }
+
+    private List<Long> saveChunk(List<Person> chunk) {
+        chunk.forEach(this::linkAddresses);
+        List<Person> saved = personRepository.saveAll(chunk);
+        entityManager.flush();
+        return saved.stream().map(Person::getId).collect(Collectors.toList());
+    }
+
+    private Person findForUpdate(Long personId, Long expectedVersion) {
+        Person storedPerson = personRepository.findWithAddressById(personId).orElseThrow(() -> {
             log.error("person is not found for id {}", personId);
             return new ObjectNotFound("person", personId);
         });
+        checkVersion(storedPerson, expectedVersion);
+        return storedPerson;
+    }
+
+    private void checkVersion(Person storedPerson, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(storedPerson.getVersion())) {
+            log.error("person {} is at version {} not {}", storedPerson.getId(), storedPerson.getVersion(), expectedVersion);
+            throw new PreconditionFailed("person", storedPerson.getId(), expectedVersion);
+        }
+    }
+
+    private void validateAddresses(String path, Collection<Address> addresses) {
+        List<String> errors = addressErrors(path, addresses);
+        if (!errors.isEmpty()) {
+            throw new InvalidRequest(errors);
+        }
+    }
+
+    /**
+     * Validates each address under its index in the request, e.g. {@code [3].address[0].city}.
+     */
+    private List<String> addressErrors(String path, Collection<Address> addresses) {
+        List<String> errors = new ArrayList<>();
+        int i = 0;
+        for (Address address : addresses) {
+            errors.addAll(requestValidator.validate(path + "[" + i++ + "]", address));
+        }
+        return errors;
+    }
+
+    /**
+     * Brings the stored address collection in line with the requested one without replacing the collection itself,
+     * which would delete and re-insert every row. Unmatched stored addresses are removed from the collection for
+     * orphan removal to delete. The person version is bumped when anything changed, because it is the ETag of the
+     * address list as well.
+     * <p>
+     * New addresses are inserted as copies, so the request's own objects never get ids and a request applied again,
+     * as {@link #updatePersonWithRetry} does after a conflict, still asks for the same inserts.
+     */
+    private void mergeAddresses(Person person, Collection<Address> requested) {
+        AddressMerge merge = AddressMerge.plan(person.getId(), person.getAddress(), requested);
+        // dirty checking still writes only the columns whose value actually differs
+        merge.getUpdated().forEach((stored, address) -> AddressMerge.copy(address, stored));
+        person.getAddress().removeIf(merge.getRemoved()::contains);
+        for (Address address : merge.getInserted()) {
+            Address inserted = new Address();
+            AddressMerge.copy(address, inserted);
+            inserted.setPerson(person);
+            person.getAddress().add(inserted);
+        }
+        if (!merge.isEmpty()) {
+            entityManager.lock(person, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        }
+    }
+
+    private void linkAddresses(Person person) {
+        if (person.getAddress() != null) {
+            person.getAddress().forEach(address -> address.setPerson(person));
+        }
+    }
+
+    private List<Person> findPage(Long afterId, int size) {
+        List<Long> ids = personRepository.findIdsByIdGreaterThan(afterId, PageRequest.of(0, size));
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return personRepository.findDistinctByIdInOrderByIdAsc(ids);
+    }
+
+    private List<Person> findInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Person> byId = personRepository.findDistinctByIdInOrderByIdAsc(ids).stream()
+                .collect(Collectors.toMap(Person::getId, Function.identity()));
+        // a person deleted between the two queries is left out rather than returned as null
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private static String sortValue(Person person, PersonSort sort) {
+        switch (sort) {
+            case LAST_NAME:
+                return person.getLastName();
+            case FIRST_NAME:
+                return person.getFirstName();
+            default:
+                return null;
+        }
     }
 
-    public long getPersonCount() {
-        return personRepository.count();
+    static int pageSize(Integer limit) {
+        if (limit == null) {
+            return MAX_PAGE_SIZE;
+        }
+        if (limit < 1) {
+            throw new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_INVALID_LIMIT));
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
     }
 }
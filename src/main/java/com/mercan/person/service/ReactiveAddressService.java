@@ -0,0 +1,175 @@
+package com.mercan.person.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.AddressRow;
+import com.mercan.person.exception.ObjectNotFound;
+import com.mercan.person.exception.PreconditionFailed;
+import com.mercan.person.repository.AddressRowRepository;
+import com.mercan.person.repository.PersonRowRepository;
+import com.mercan.person.service.ReportAggregates.Footprint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The non-blocking counterpart of {@link AddressService} for the reactive stack, over R2DBC. Every write bumps the
+ * person's version in the same transaction, with the same compare-and-set when the caller sent an expected version.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveAddressService {
+
+    private final AddressRowRepository addressRowRepository;
+    private final PersonRowRepository personRowRepository;
+    private final ReactiveIdGenerator idGenerator;
+    private final TransactionalOperator transactionalOperator;
+    private final MergePatcher mergePatcher;
+    private final ReportAggregates reportAggregates;
+
+    /**
+     * Streams the addresses of a person, empty when the person has none or does not exist; callers tell the two
+     * apart through {@link ReactivePersonService#getPersonVersion}.
+     */
+    public Flux<Address> getAddress(Long personId) {
+        return addressRowRepository.findByPersonId(personId).map(AddressRow::toAddress);
+    }
+
+    public Mono<Address> createAddress(Long personId, Address address) {
+        // bumping the version also proves the person exists and locks it against a concurrent delete
+        Mono<Changed> created = personRowRepository.incrementVersion(personId)
+                .flatMap(count -> count == 0 ? Mono.error(personNotFound(personId)) : findAddresses(personId))
+                .flatMap(stored -> idGenerator.nextAddressId()
+                        .flatMap(addressId -> addressRowRepository.save(AddressRow.of(addressId, personId, address)))
+                        .map(row -> {
+                            List<Address> after = new ArrayList<>(stored);
+                            after.add(row.toAddress());
+                            return new Changed(row.toAddress(), stored, after);
+                        }));
+        return transactionalOperator.transactional(created).doOnNext(this::recordChange).map(changed -> changed.address);
+    }
+
+    /**
+     * Updates an address in place as {@link AddressService#updateAddress} does, checking {@code expectedVersion}
+     * against the person's version in the same statement that bumps it.
+     */
+    public Mono<Address> updateAddress(Long personId, Long addressId, Address addressRequested, Long expectedVersion) {
+        Mono<Changed> updated = checkAndBumpVersion(personId, expectedVersion)
+                .then(findAddresses(personId))
+                .flatMap(stored -> addressRowRepository.updateByIdAndPersonId(addressId, personId,
+                        addressRequested.getStreet(), addressRequested.getCity(),
+                        addressRequested.getState(), addressRequested.getPostalCode())
+                        .flatMap(count -> count == 0 ? Mono.error(addressNotFound(addressId, personId, "address ")) : bumpVersion(personId, expectedVersion))
+                        .then(Mono.fromSupplier(() -> {
+                            addressRequested.setId(addressId);
+                            return new Changed(addressRequested, stored, replaced(stored, addressRequested));
+                        })));
+        return transactionalOperator.transactional(updated).doOnNext(this::recordChange).map(changed -> changed.address);
+    }
+
+    /**
+     * Applies a JSON Merge Patch to an address. {@code expectedVersion} is checked against the person's version
+     * exactly as for {@link #updateAddress}.
+     */
+    public Mono<Address> patchAddress(Long personId, Long addressId, JsonNode patch, Long expectedVersion) {
+        Mono<Changed> patched = checkAndBumpVersion(personId, expectedVersion)
+                .then(addressRowRepository.findByIdAndPersonId(addressId, personId))
+                .switchIfEmpty(Mono.error(() -> addressNotFound(addressId, personId, "address ")))
+                .flatMap(row -> findAddresses(personId).flatMap(stored -> {
+                    Address address = mergePatcher.apply(row.toAddress(), patch, AddressService.PATCHABLE_FIELDS);
+                    return addressRowRepository.updateByIdAndPersonId(addressId, personId,
+                            address.getStreet(), address.getCity(), address.getState(), address.getPostalCode())
+                            .then(bumpVersion(personId, expectedVersion))
+                            .thenReturn(new Changed(address, stored, replaced(stored, address)));
+                }));
+        return transactionalOperator.transactional(patched).doOnNext(this::recordChange).map(changed -> changed.address);
+    }
+
+    public Mono<Void> deleteAddress(Long addressId, Long personId) {
+        Mono<Changed> deleted = findAddresses(personId).flatMap(stored -> addressRowRepository.deleteByIdAndPersonId(addressId, personId)
+                .flatMap(count -> count == 0 ? Mono.error(addressNotFound(addressId, personId, "address")) : personRowRepository.incrementVersion(personId))
+                .map(count -> {
+                    List<Address> after = new ArrayList<>(stored);
+                    after.removeIf(address -> address.getId().equals(addressId));
+                    return new Changed(null, stored, after);
+                }));
+        return transactionalOperator.transactional(deleted).doOnNext(this::recordChange).then();
+    }
+
+    private void recordChange(Changed changed) {
+        reportAggregates.change(Footprint.of(changed.before), Footprint.of(changed.after));
+    }
+
+    private Mono<List<Address>> findAddresses(Long personId) {
+        return addressRowRepository.findByPersonId(personId).map(AddressRow::toAddress).collectList();
+    }
+
+    private static List<Address> replaced(List<Address> stored, Address address) {
+        List<Address> after = new ArrayList<>(stored.size());
+        for (Address existing : stored) {
+            after.add(existing.getId().equals(address.getId()) ? address : existing);
+        }
+        return after;
+    }
+
+    /**
+     * The compare-and-set half of the version handling, done before anything is written.
+     */
+    private Mono<Void> checkAndBumpVersion(Long personId, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.empty();
+        }
+        return personRowRepository.incrementVersionIfMatches(personId, expectedVersion)
+                .flatMap(count -> count == 0 ? versionMismatchOrNotFound(personId, expectedVersion) : Mono.empty());
+    }
+
+    /**
+     * The unconditional half, done after the write when the caller sent no expected version.
+     */
+    private Mono<Integer> bumpVersion(Long personId, Long expectedVersion) {
+        return expectedVersion == null ? personRowRepository.incrementVersion(personId) : Mono.just(1);
+    }
+
+    private Mono<Void> versionMismatchOrNotFound(Long personId, Long expectedVersion) {
+        return personRowRepository.findVersionById(personId)
+                .flatMap(version -> {
+                    log.error("person {} is not at version {}", personId, expectedVersion);
+                    return Mono.<Void>error(new PreconditionFailed("person", personId, expectedVersion));
+                })
+                .switchIfEmpty(Mono.error(() -> personNotFound(personId)));
+    }
+
+    private static ObjectNotFound personNotFound(Long personId) {
+        log.error("person is not found for id {}", personId);
+        return new ObjectNotFound("person ", personId);
+    }
+
+    private static ObjectNotFound addressNotFound(Long addressId, Long personId, String collection) {
+        log.error("address is not found for addressId {} personId {}", addressId, personId);
+        return new ObjectNotFound(collection, addressId);
+    }
+
+    /**
+     * A written address with the person's addresses before and after the write.
+     */
+    private static final class Changed {
+        private final Address address;
+        private final List<Address> before;
+        private final List<Address> after;
+
+        Changed(Address address, List<Address> before, List<Address> after) {
+            this.address = address;
+            this.before = before;
+            this.after = after;
+        }
+    }
+}
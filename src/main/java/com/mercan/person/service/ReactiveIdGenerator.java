@@ -0,0 +1,71 @@
+package com.mercan.person.service;
+
+import com.mercan.person.repository.AddressRowRepository;
+import com.mercan.person.repository.PersonRowRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hands out ids for rows the reactive stack inserts. Ids come from the sequences Hibernate uses and are reserved the
+ * way its pooled-lo optimizer reserves them, {@code person.id.allocation-size} at a time starting at the sequence
+ * value, so blocks taken by either stack never overlap and only one insert per block reads the sequence.
+ */
+@Component
+public class ReactiveIdGenerator {
+    private final IdBlocks personIds;
+    private final IdBlocks addressIds;
+
+    public ReactiveIdGenerator(PersonRowRepository personRowRepository, AddressRowRepository addressRowRepository,
+                               @Value("${person.id.allocation-size}") int allocationSize) {
+        this.personIds = new IdBlocks(personRowRepository::nextIdBlock, allocationSize);
+        this.addressIds = new IdBlocks(addressRowRepository::nextIdBlock, allocationSize);
+    }
+
+    public Mono<Long> nextPersonId() {
+        return personIds.next();
+    }
+
+    public Mono<Long> nextAddressId() {
+        return addressIds.next();
+    }
+
+    private static final class IdBlocks {
+        private final Supplier<Mono<Long>> nextBlock;
+        private final int allocationSize;
+        private volatile Block block = new Block(0, 0);
+
+        IdBlocks(Supplier<Mono<Long>> nextBlock, int allocationSize) {
+            this.nextBlock = nextBlock;
+            this.allocationSize = allocationSize;
+        }
+
+        Mono<Long> next() {
+            return Mono.defer(() -> {
+                Block current = block;
+                long id = current.next.getAndIncrement();
+                if (id < current.end) {
+                    return Mono.just(id);
+                }
+                // callers racing past the end of a block each reserve a fresh one; the loser's unused ids are skipped
+                return nextBlock.get().map(start -> {
+                    block = new Block(start + 1, start + allocationSize);
+                    return start;
+                });
+            });
+        }
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        Block(long next, long end) {
+            this.next = new AtomicLong(next);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.mercan.person.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.AddressRow;
+import com.mercan.person.entity.Person;
+import com.mercan.person.entity.PersonRow;
+import com.mercan.person.exception.InvalidRequest;
+import com.mercan.person.exception.ObjectNotFound;
+import com.mercan.person.exception.PreconditionFailed;
+import com.mercan.person.pojo.CursorPage;
+import com.mercan.person.repository.AddressRowRepository;
+import com.mercan.person.repository.PersonRowRepository;
+import com.mercan.person.service.ReportAggregates.Footprint;
+import com.mercan.person.util.Cursors;
+import com.mercan.person.validation.RequestValidator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_CONCURRENT_MODIFICATION;
+import static com.mercan.person.constants.PersonServiceConstants.EXPORT_CHUNK_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.PAGE_CHUNK_SIZE;
+
+/**
+ * The non-blocking counterpart of {@link PersonService} for the reactive stack, over R2DBC. Writes run in one R2DBC
+ * transaction each and check, version and merge exactly as the JPA service does; the count, name index and reporting
+ * aggregates are updated once the transaction has committed.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactivePersonService {
+
+    private final PersonRowRepository personRowRepository;
+    private final AddressRowRepository addressRowRepository;
+    private final ReactiveIdGenerator idGenerator;
+    private final TransactionalOperator transactionalOperator;
+    private final RequestValidator requestValidator;
+    private final MergePatcher mergePatcher;
+    private final PersonCountTracker personCountTracker;
+    private final PersonNameIndex personNameIndex;
+    private final ReportAggregates reportAggregates;
+
+    /**
+     * Returns the ids of a page of people in id order, starting after the given cursor and capped at
+     * {@code MAX_PAGE_SIZE}. Only the ids are read up front, so the next cursor is known before
+     * {@link #findPeople} streams the page itself.
+     */
+    public Mono<CursorPage<Long>> getPersonIds(String after, Integer limit) {
+        int pageSize = PersonService.pageSize(limit);
+        Long afterId = after == null ? 0L : Cursors.decode(after);
+
+        // one extra row tells us whether there is a next page without running a count query
+        return personRowRepository.findIdsByIdGreaterThan(afterId, pageSize + 1).collectList().map(ids -> {
+            List<Long> items = ids;
+            String nextCursor = null;
+            if (ids.size() > pageSize) {
+                items = ids.subList(0, pageSize);
+                nextCursor = Cursors.encode(items.get(pageSize - 1));
+            }
+            return CursorPage.<Long>builder()
+                    .items(items)
+                    .nextCursor(nextCursor)
+                    .build();
+        });
+    }
+
+    /**
+     * Loads the given people with their addresses in id order, {@code PAGE_CHUNK_SIZE} at a time and only as fast as
+     * the subscriber requests them. People deleted since their id was read are left out.
+     */
+    public Flux<Person> findPeople(List<Long> ids) {
+        return Flux.fromIterable(ids)
+                .buffer(PAGE_CHUNK_SIZE)
+                .concatMap(chunk -> personRowRepository.findByIdInOrderById(chunk).collectList().flatMapMany(this::withAddresses), 1);
+    }
+
+    /**
+     * Emits every person with an id greater than {@code afterId} in id order. Rows are read in keyset chunks and the
+     * next chunk is only read once the subscriber has taken most of the current one, so memory stays flat whatever
+     * the table size and a slow client slows the export instead of buffering it.
+     */
+    public Flux<Person> exportPeople(Long afterId) {
+        return findChunk(afterId == null ? 0L : afterId)
+                .expand(chunk -> chunk.size() < EXPORT_CHUNK_SIZE ? Mono.empty() : findChunk(chunk.get(chunk.size() - 1).getId()))
+                .flatMapIterable(Function.identity(), 1);
+    }
+
+    public Mono<Person> getPerson(Long personId) {
+        return findPerson(personId).flatMap(row -> findAddresses(personId)
+                .map(addresses -> row.toPerson(new LinkedHashSet<>(addresses))));
+    }
+
+    public Mono<Long> getPersonVersion(Long personId) {
+        return personRowRepository.findVersionById(personId).switchIfEmpty(Mono.error(() -> notFound(personId)));
+    }
+
+    public Mono<Person> createPerson(Person person) {
+        Collection<Address> requested = person.getAddress() == null ? Collections.emptyList() : person.getAddress();
+        Mono<Person> created = idGenerator.nextPersonId()
+                .flatMap(personId -> personRowRepository.save(PersonRow.of(personId, person)))
+                .flatMap(row -> insertAddresses(row.getId(), requested)
+                        .map(addresses -> row.toPerson(person.getAddress() == null ? null : new LinkedHashSet<>(addresses))));
+        return transactionalOperator.transactional(created).doOnNext(createdPerson -> {
+            personCountTracker.add(1);
+            personNameIndex.put(createdPerson);
+            reportAggregates.change(Footprint.NONE, Footprint.of(createdPerson.getAddress()));
+        });
+    }
+
+    /**
+     * Replaces a person as {@link PersonService#updatePerson} does: a non-null {@code expectedVersion} must match
+     * the stored version, a request with addresses merges them into the stored ones and the version is bumped by a
+     * compare-and-set update, so a write racing this one fails with an {@code OptimisticLockingFailureException}.
+     */
+    public Mono<Person> updatePerson(Long personId, Person personRequest, Long expectedVersion) {
+        Mono<Merged> updated = findForUpdate(personId, expectedVersion).flatMap(row -> findAddresses(personId).flatMap(stored -> {
+            Footprint before = Footprint.of(stored);
+            boolean renamed = !Objects.equals(row.getFirstName(), personRequest.getFirstName())
+                    || !Objects.equals(row.getLastName(), personRequest.getLastName());
+            row.setFirstName(personRequest.getFirstName());
+            row.setLastName(personRequest.getLastName());
+            if (personRequest.getAddress() == null) {
+                return bumpVersion(row, renamed).map(person -> new Merged(person, stored, before));
+            }
+            validateAddresses("address", personRequest.getAddress());
+            AddressMerge merge = AddressMerge.plan(personId, stored, personRequest.getAddress());
+            return writeMerge(personId, stored, merge).flatMap(addresses -> bumpVersion(row, renamed || !merge.isEmpty())
+                    .map(person -> new Merged(person, addresses, before)));
+        }));
+        return transactionalOperator.transactional(updated).map(merged -> {
+            personNameIndex.put(merged.person);
+            reportAggregates.change(merged.before, Footprint.of(merged.addresses));
+            merged.person.setAddress(new LinkedHashSet<>(merged.addresses));
+            return merged.person;
+        });
+    }
+
+    /**
+     * Replaces the addresses of a person as {@link PersonService#replaceAddresses} does, inserting, updating and
+     * deleting only the addresses that differ.
+     */
+    public Mono<List<Address>> replaceAddresses(Long personId, List<Address> addresses, Long expectedVersion) {
+        Mono<Merged> replaced = findForUpdate(personId, expectedVersion).flatMap(row -> findAddresses(personId).flatMap(stored -> {
+            validateAddresses("", addresses);
+            AddressMerge merge = AddressMerge.plan(personId, stored, addresses);
+            return writeMerge(personId, stored, merge).flatMap(merged -> bumpVersion(row, !merge.isEmpty())
+                    .map(person -> new Merged(person, merged, Footprint.of(stored))));
+        }));
+        return transactionalOperator.transactional(replaced).map(merged -> {
+            reportAggregates.change(merged.before, Footprint.of(merged.addresses));
+            return merged.addresses;
+        });
+    }
+
+    /**
+     * Applies a JSON Merge Patch to a person, writing nothing when the patch leaves the names as they were.
+     */
+    public Mono<Person> patchPerson(Long personId, JsonNode patch, Long expectedVersion) {
+        Mono<Person> patched = findForUpdate(personId, expectedVersion).flatMap(row -> {
+            Person person = mergePatcher.apply(row.toPerson(null), patch, PersonService.PATCHABLE_FIELDS);
+            boolean renamed = !Objects.equals(row.getFirstName(), person.getFirstName())
+                    || !Objects.equals(row.getLastName(), person.getLastName());
+            row.setFirstName(person.getFirstName());
+            row.setLastName(person.getLastName());
+            return bumpVersion(row, renamed);
+        }).flatMap(person -> findAddresses(personId).map(addresses -> {
+            person.setAddress(new LinkedHashSet<>(addresses));
+            return person;
+        }));
+        return transactionalOperator.transactional(patched).doOnNext(personNameIndex::put);
+    }
+
+    public Mono<Void> delete(Long personId) {
+        Mono<List<Address>> deleted = findAddresses(personId).flatMap(addresses -> personRowRepository.deleteReturningCount(personId)
+                .flatMap(count -> count == 0 ? Mono.error(notFound(personId)) : Mono.just(addresses)));
+        return transactionalOperator.transactional(deleted).doOnNext(addresses -> {
+            personCountTracker.add(-1);
+            personNameIndex.remove(personId);
+            reportAggregates.change(Footprint.of(addresses), Footprint.NONE);
+        }).then();
+    }
+
+    private Mono<List<Person>> findChunk(Long afterId) {
+        return personRowRepository.findByIdGreaterThan(afterId, EXPORT_CHUNK_SIZE).collectList()
+                .flatMap(rows -> withAddresses(rows).collectList());
+    }
+
+    private Flux<Person> withAddresses(List<PersonRow> rows) {
+        if (rows.isEmpty()) {
+            return Flux.empty();
+        }
+        List<Long> ids = rows.stream().map(PersonRow::getId).collect(Collectors.toList());
+        return addressRowRepository.findByPersonIdIn(ids)
+                .collectMultimap(AddressRow::getPersonId, AddressRow::toAddress)
+                .flatMapIterable(byPerson -> rows.stream()
+                        .map(row -> row.toPerson(addressSet(byPerson, row.getId())))
+                        .collect(Collectors.toList()));
+    }
+
+    private static Set<Address> addressSet(Map<Long, Collection<Address>> byPerson, Long personId) {
+        Collection<Address> addresses = byPerson.get(personId);
+        return addresses == null ? new LinkedHashSet<>() : new LinkedHashSet<>(addresses);
+    }
+
+    private Mono<List<Address>> findAddresses(Long personId) {
+        return addressRowRepository.findByPersonId(personId).map(AddressRow::toAddress).collectList();
+    }
+
+    private Mono<List<Address>> insertAddresses(Long personId, Collection<Address> addresses) {
+        return Flux.fromIterable(addresses)
+                .concatMap(address -> idGenerator.nextAddressId()
+                        .flatMap(addressId -> addressRowRepository.save(AddressRow.of(addressId, personId, address))))
+                .map(AddressRow::toAddress)
+                .collectList();
+    }
+
+    /**
+     * Writes a merge planned by {@link AddressMerge} and returns the person's addresses after it.
+     */
+    private Mono<List<Address>> writeMerge(Long personId, List<Address> stored, AddressMerge merge) {
+        Flux<Integer> removed = Flux.fromIterable(merge.getRemoved())
+                .concatMap(address -> addressRowRepository.deleteByIdAndPersonId(address.getId(), personId));
+        Flux<Integer> updated = Flux.fromIterable(merge.getUpdated().entrySet())
+                .concatMap(update -> addressRowRepository.updateByIdAndPersonId(update.getKey().getId(), personId,
+                        update.getValue().getStreet(), update.getValue().getCity(),
+                        update.getValue().getState(), update.getValue().getPostalCode()));
+        return removed.thenMany(updated).then(insertAddresses(personId, merge.getInserted())).map(inserted -> {
+            List<Address> addresses = new ArrayList<>(stored.size() + inserted.size());
+            for (Address address : stored) {
+                if (merge.getRemoved().contains(address)) {
+                    continue;
+                }
+                Address update = merge.getUpdated().get(address);
+                if (update != null) {
+                    AddressMerge.copy(update, address);
+                }
+                addresses.add(address);
+            }
+            addresses.addAll(inserted);
+            return addresses;
+        });
+    }
+
+    /**
+     * Writes the names and bumps the version when anything changed, failing if another write got in first.
+     */
+    private Mono<Person> bumpVersion(PersonRow row, boolean changed) {
+        if (!changed) {
+            return Mono.just(row.toPerson(null));
+        }
+        return personRowRepository.updateIfMatches(row.getId(), row.getVersion(), row.getFirstName(), row.getLastName())
+                .flatMap(count -> {
+                    if (count == 0) {
+                        log.error("person {} was modified concurrently", row.getId());
+                        return Mono.error(new OptimisticLockingFailureException(ERROR_MESSAGE_CONCURRENT_MODIFICATION));
+                    }
+                    row.setVersion(row.getVersion() + 1);
+                    return Mono.just(row.toPerson(null));
+                });
+    }
+
+    private Mono<PersonRow> findPerson(Long personId) {
+        return personRowRepository.findById(personId).switchIfEmpty(Mono.error(() -> notFound(personId)));
+    }
+
+    private Mono<PersonRow> findForUpdate(Long personId, Long expectedVersion) {
+        return findPerson(personId).flatMap(row -> {
+            if (expectedVersion != null && !expectedVersion.equals(row.getVersion())) {
+                log.error("person {} is at version {} not {}", personId, row.getVersion(), expectedVersion);
+                return Mono.error(new PreconditionFailed("person", personId, expectedVersion));
+            }
+            return Mono.just(row);
+        });
+    }
+
+    private void validateAddresses(String path, Collection<Address> addresses) {
+        List<String> errors = new ArrayList<>();
+        int i = 0;
+        for (Address address : addresses) {
+            errors.addAll(requestValidator.validate(path + "[" + i++ + "]", address));
+        }
+        if (!errors.isEmpty()) {
+            throw new InvalidRequest(errors);
+        }
+    }
+
+    private static ObjectNotFound notFound(Long personId) {
+        log.error("person is not found for id {}", personId);
+        return new ObjectNotFound("person", personId);
+    }
+
+    /**
+     * A written person with its addresses after the write and the footprint they had before it.
+     */
+    private static final class Merged {
+        private final Person person;
+        private final List<Address> addresses;
+        private final Footprint before;
+
+        Merged(Person person, List<Address> addresses, Footprint before) {
+            this.person = person;
+            this.addresses = addresses;
+            this.before = before;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.mercan.person.service;
+
+import com.mercan.person.entity.Address;
+import com.mercan.person.pojo.AddressCountBucket;
+import com.mercan.person.pojo.LocationCount;
+import com.mercan.person.repository.AddressRepository;
+import com.mercan.person.repository.AddressRepository.AddressLocation;
+import com.mercan.person.routing.ReadRouting;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static com.mercan.person.util.Transactions.afterCommit;
+
+/**
+ * Keeps the reporting aggregates in memory so reports are answered without a {@code GROUP BY}: people per state,
+ * people per city and the number of people with each count of addresses. A person counts once in a state or city
+ * however many of their addresses are there.
+ * <p>
+ * Writers hand over the {@link Footprint} of a person's addresses before and after a write and only the groups that
+ * differ are adjusted, once the write commits. Like {@link PersonCountTracker} the aggregates are rebuilt from the
+ * database on startup and on a schedule, which corrects drift from writes that raced each other or a reconciliation,
+ * or happened outside this instance. Rebuilds read from the primary.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReportAggregates {
+    private static final Comparator<List<String>> BY_STATE_AND_CITY = Comparator
+            .comparing((List<String> key) -> key.get(0))
+            .thenComparing(key -> key.get(1), Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final AddressRepository addressRepository;
+    private volatile Counts counts = new Counts();
+
+    /**
+     * Returns the number of people per state ordered by state. With {@code exact} set the aggregates are first
+     * rebuilt from the database.
+     */
+    public List<LocationCount> getPeopleByState(boolean exact) {
+        Counts current = exact ? rebuild() : counts;
+        List<LocationCount> result = new ArrayList<>(current.byState.size());
+        current.byState.forEach((state, people) -> result.add(LocationCount.builder().state(state).people(people).build()));
+        return result;
+    }
+
+    /**
+     * Returns the number of people per city ordered by state and city, only for the given state when it is not
+     * {@code null}. With {@code exact} set the aggregates are first rebuilt from the database.
+     */
+    public List<LocationCount> getPeopleByCity(String state, boolean exact) {
+        Counts current = exact ? rebuild() : counts;
+        Map<List<String>, Long> cities = state == null ? current.byCity : current.byCity.tailMap(Arrays.asList(state, null));
+        List<LocationCount> result = new ArrayList<>();
+        for (Map.Entry<List<String>, Long> city : cities.entrySet()) {
+            if (state != null && !state.equals(city.getKey().get(0))) {
+                break;
+            }
+            result.add(LocationCount.builder().state(city.getKey().get(0)).city(city.getKey().get(1)).people(city.getValue()).build());
+        }
+        return result;
+    }
+
+    /**
+     * Returns how many people have each number of addresses, ordered by the number of addresses. With {@code exact}
+     * set the aggregates are first rebuilt from the database.
+     */
+    public List<AddressCountBucket> getAddressDistribution(boolean exact) {
+        Counts current = exact ? rebuild() : counts;
+        List<AddressCountBucket> result = new ArrayList<>(current.byAddressCount.size());
+        current.byAddressCount.forEach((addresses, people) -> result.add(AddressCountBucket.builder().addresses(addresses).people(people).build()));
+        return result;
+    }
+
+    /**
+     * Records a change to a person's addresses, or the creation or deletion of the person when {@code before} or
+     * {@code after} is {@link Footprint#NONE}, after the current transaction commits.
+     */
+    public void change(Footprint before, Footprint after) {
+        afterCommit(() -> counts.apply(before, after));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${person.report.reconcile-interval-ms}", initialDelayString = "${person.report.reconcile-interval-ms}")
+    public void reconcile() {
+        rebuild();
+    }
+
+    private Counts rebuild() {
+        long start = System.nanoTime();
+        Counts exact = ReadRouting.onPrimary(() -> {
+            Counts counted = new Counts();
+            addressRepository.countPeopleByState().forEach(tally -> counted.byState.put(tally.getState(), tally.getPeople()));
+            addressRepository.countPeopleByCity().forEach(tally -> counted.byCity.put(Arrays.asList(tally.getState(), tally.getCity()), tally.getPeople()));
+            addressRepository.countPeopleByAddressCount().forEach(tally -> counted.byAddressCount.put(tally.getAddresses().intValue(), tally.getPeople()));
+            return counted;
+        });
+        Counts previous = counts;
+        counts = exact;
+        if (!previous.equals(exact)) {
+            log.info("report aggregates reconciled to {} states and {} cities in {} ms",
+                    exact.byState.size(), exact.byCity.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+        return exact;
+    }
+
+    /**
+     * The groups one person's addresses fall into.
+     */
+    public static final class Footprint {
+        /**
+         * The footprint of a person that does not exist, before a create or after a delete.
+         */
+        public static final Footprint NONE = new Footprint(false);
+
+        private final boolean present;
+        private final Set<String> states = new HashSet<>();
+        private final Set<List<String>> cities = new HashSet<>();
+        private int addresses;
+
+        private Footprint(boolean present) {
+            this.present = present;
+        }
+
+        public static Footprint of(Collection<Address> addresses) {
+            Footprint footprint = new Footprint(true);
+            if (addresses != null) {
+                addresses.forEach(address -> footprint.add(address.getState(), address.getCity()));
+            }
+            return footprint;
+        }
+
+        public static Footprint ofLocations(Collection<AddressLocation> locations) {
+            return ofLocations(locations, null, null);
+        }
+
+        /**
+         * The footprint after a write to one address, worked out from the locations read before it: the location
+         * of {@code replacedId} is left out and {@code replacement}, when given, is added.
+         */
+        public static Footprint ofLocations(Collection<AddressLocation> locations, Long replacedId, Address replacement) {
+            Footprint footprint = new Footprint(true);
+            locations.stream()
+                    .filter(location -> !location.getId().equals(replacedId))
+                    .forEach(location -> footprint.add(location.getState(), location.getCity()));
+            if (replacement != null) {
+                footprint.add(replacement.getState(), replacement.getCity());
+            }
+            return footprint;
+        }
+
+        private void add(String state, String city) {
+            addresses++;
+            if (state != null) {
+                states.add(state);
+                cities.add(Arrays.asList(state, city));
+            }
+        }
+    }
+
+    /**
+     * One generation of aggregates. A reconciliation replaces the whole generation, so readers never see a
+     * half-rebuilt one.
+     */
+    private static final class Counts {
+        private final ConcurrentNavigableMap<String, Long> byState = new ConcurrentSkipListMap<>();
+        private final ConcurrentNavigableMap<List<String>, Long> byCity = new ConcurrentSkipListMap<>(BY_STATE_AND_CITY);
+        private final ConcurrentNavigableMap<Integer, Long> byAddressCount = new ConcurrentSkipListMap<>();
+
+        void apply(Footprint before, Footprint after) {
+            for (String state : before.states) {
+                if (!after.states.contains(state)) {
+                    add(byState, state, -1);
+                }
+            }
+            for (String state : after.states) {
+                if (!before.states.contains(state)) {
+                    add(byState, state, 1);
+                }
+            }
+            for (List<String> city : before.cities) {
+                if (!after.cities.contains(city)) {
+                    add(byCity, city, -1);
+                }
+            }
+            for (List<String> city : after.cities) {
+                if (!before.cities.contains(city)) {
+                    add(byCity, city, 1);
+                }
+            }
+            if (before.present != after.present || before.addresses != after.addresses) {
+                if (before.present) {
+                    add(byAddressCount, before.addresses, -1);
+                }
+                if (after.present) {
+                    add(byAddressCount, after.addresses, 1);
+                }
+            }
+        }
+
+        private static <K> void add(ConcurrentNavigableMap<K, Long> counts, K key, long delta) {
+            // a group that drops to zero is removed, so reads only ever walk populated groups; a decrement for a
+            // person never counted, e.g. one the last reconcile missed, removes the group instead of going negative
+            counts.compute(key, (group, count) -> {
+                long updated = (count == null ? 0 : count) + delta;
+                return updated > 0 ? updated : null;
+            });
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Counts)) {
+                return false;
+            }
+            Counts that = (Counts) other;
+            return byState.equals(that.byState) && byCity.equals(that.byCity) && byAddressCount.equals(that.byAddressCount);
+        }
+
+        @Override
+        public int hashCode() {
+            return byState.hashCode();
+        }
+    }
+}
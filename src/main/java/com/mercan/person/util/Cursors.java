@@ -0,0 +1,64 @@
+package com.mercan.person.util;
+
+import com.mercan.person.exception.InvalidRequest;
+import com.mercan.person.pojo.Keyset;
+import com.mercan.person.pojo.PersonSort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_INVALID_CURSOR;
+
+/**
+ * Encodes keyset positions as opaque url-safe cursors so clients do not depend on the id format.
+ */
+public final class Cursors {
+
+    private Cursors() {
+    }
+
+    public static String encode(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decode(String cursor) {
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_INVALID_CURSOR));
+        }
+    }
+
+    /**
+     * Encodes a position in a page sorted by {@code value} and then by id, led by the sort it is a position in. The
+     * sort and the id go first, so the value may contain any character.
+     */
+    public static String encode(Keyset keyset) {
+        String position = keyset.getSort().getAttribute() + ":" + keyset.getId();
+        if (keyset.getValue() != null) {
+            position += ":" + keyset.getValue();
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Keyset decodeKeyset(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int idStart = position.indexOf(':') + 1;
+            int valueSeparator = position.indexOf(':', idStart);
+            String attribute = position.substring(0, Math.max(idStart - 1, 0));
+            return Keyset.builder()
+                    .sort(Arrays.stream(PersonSort.values())
+                            .filter(sort -> sort.getAttribute().equals(attribute))
+                            .findFirst()
+                            .orElseThrow(IllegalArgumentException::new))
+                    .id(Long.valueOf(valueSeparator < 0 ? position.substring(idStart) : position.substring(idStart, valueSeparator)))
+                    .value(valueSeparator < 0 ? null : position.substring(valueSeparator + 1))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_INVALID_CURSOR));
+        }
+    }
+}
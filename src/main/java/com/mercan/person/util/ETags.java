@@ -0,0 +1,44 @@
+package com.mercan.person.util;
+
+import com.mercan.person.exception.InvalidRequest;
+import com.mercan.person.exception.PreconditionFailed;
+
+import java.util.Collections;
+
+import static com.mercan.person.constants.PersonServiceConstants.ERROR_MESSAGE_INVALID_IF_MATCH;
+
+/**
+ * Strong entity tags derived from entity versions.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Returns the version of person {@code personId} an {@code If-Match} header requires, or {@code null} when the
+     * header is absent or {@code *}. Weak tags are well-formed but never match under the strong comparison
+     * {@code If-Match} uses, so they fail the precondition; malformed tags are rejected.
+     */
+    public static Long parseIfMatch(String ifMatch, Long personId) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            throw new PreconditionFailed("person", personId, null);
+        }
+        try {
+            if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                return Long.valueOf(tag.substring(1, tag.length() - 1));
+            }
+        } catch (NumberFormatException e) {
+            // falls through to the rejection below
+        }
+        throw new InvalidRequest(Collections.singletonList(ERROR_MESSAGE_INVALID_IF_MATCH));
+    }
+}
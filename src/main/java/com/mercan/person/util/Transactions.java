@@ -0,0 +1,30 @@
+package com.mercan.person.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helpers for side effects that must only happen once the data they describe is committed.
+ */
+public final class Transactions {
+
+    private Transactions() {
+    }
+
+    /**
+     * Runs the action after the current transaction commits, so a rolled back write never reaches it, or right away
+     * when there is no transaction.
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,34 @@
+package com.mercan.person.validation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Runs bean validation on request items that are not bound through {@code @Valid}, e.g. elements of a bulk
+ * payload, and renders violations in the same {@code field: message} form as the web exception handler.
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestValidator {
+    private final Validator validator;
+
+    public List<String> validate(String path, Object item) {
+        return validate(item, path + ".");
+    }
+
+    public List<String> validate(Object item) {
+        return validate(item, "");
+    }
+
+    private List<String> validate(Object item, String prefix) {
+        return validator.validate(item).stream()
+                .map(violation -> prefix + violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,32 @@
+-- The schema Hibernate generates from the entity mappings, prebuilt for the fast-startup profile.
+-- Keep it in step with the entities; FastStartupIntegrationTest validates one against the other.
+-- The sequences are incremented by person.id.allocation-size, the ids Hibernate reserves per sequence read.
+create sequence if not exists person_seq start with 1 increment by 50;
+create sequence if not exists address_seq start with 1 increment by 50;
+
+create table if not exists person (
+    id bigint not null,
+    first_name varchar(250),
+    last_name varchar(250),
+    version bigint,
+    primary key (id)
+);
+
+create table if not exists address (
+    id bigint not null,
+    city varchar(100),
+    postal_code varchar(20),
+    state varchar(50),
+    street varchar(250),
+    version bigint,
+    person_id bigint not null,
+    primary key (id),
+    constraint fk_address_person foreign key (person_id) references person on delete cascade
+);
+
+create index if not exists idx_person_last_name on person (last_name, id);
+create index if not exists idx_person_first_name on person (first_name, id);
+create index if not exists idx_address_person_id on address (person_id);
+create index if not exists idx_address_city on address (city);
+create index if not exists idx_address_state_city on address (state, city);
+create index if not exists idx_address_postal_code on address (postal_code);
@@ -0,0 +1,84 @@
+package com.mercan.benchmark;
+
+import com.mercan.person.pojo.NameMatch;
+import com.mercan.person.pojo.NameMatchMode;
+import com.mercan.person.search.NameIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-10 name lookups against {@code nameCount} synthetic names built from random syllables, so names share
+ * trigrams and sounds the way real ones do. Every query is an indexed name with one letter mistyped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NameIndexBenchmark {
+
+    private static final String[] ONSETS = {"", "b", "br", "c", "ch", "d", "f", "g", "h", "j", "k", "l", "m", "n",
+            "p", "r", "s", "sh", "st", "t", "th", "v", "w", "z"};
+    private static final String[] VOWELS = {"a", "e", "i", "o", "u", "ai", "ea", "ie", "ou", "y"};
+    private static final String[] CODAS = {"", "", "", "n", "r", "l", "s", "m", "rd", "ck", "tt", "nd"};
+    private static final int QUERY_COUNT = 1024;
+    private static final int TOP_K = 10;
+
+    @Param({"100000", "1000000"})
+    private int nameCount;
+
+    private NameIndex nameIndex;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        nameIndex = new NameIndex();
+        String[] names = new String[nameCount];
+        for (int id = 0; id < nameCount; id++) {
+            String firstName = name(random, 2);
+            String lastName = name(random, 3);
+            nameIndex.put(id, firstName, lastName);
+            names[id] = firstName + " " + lastName;
+        }
+        queries = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            char[] query = names[random.nextInt(nameCount)].toCharArray();
+            int typo = random.nextInt(query.length);
+            if (query[typo] != ' ') {
+                query[typo] = (char) ('a' + random.nextInt(26));
+            }
+            queries[i] = new String(query);
+        }
+    }
+
+    @Benchmark
+    public List<NameMatch> trigram() {
+        return nameIndex.search(nextQuery(), NameMatchMode.TRIGRAM, TOP_K);
+    }
+
+    @Benchmark
+    public List<NameMatch> phonetic() {
+        return nameIndex.search(nextQuery(), NameMatchMode.PHONETIC, TOP_K);
+    }
+
+    private String nextQuery() {
+        return queries[next++ & (QUERY_COUNT - 1)];
+    }
+
+    private static String name(SplittableRandom random, int syllables) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            name.append(ONSETS[random.nextInt(ONSETS.length)])
+                    .append(VOWELS[random.nextInt(VOWELS.length)])
+                    .append(CODAS[random.nextInt(CODAS.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.mercan.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.Person;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trips of the request and response payloads, using the same mapper defaults as the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int listSize;
+
+    private ObjectWriter personWriter;
+    private ObjectWriter peopleWriter;
+    private ObjectReader personReader;
+    private Validator validator;
+    private Person person;
+    private List<Person> people;
+    private byte[] personJson;
+
+    @Setup
+    public void setup() throws Exception {
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        personWriter = objectMapper.writerFor(Person.class);
+        peopleWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Person.class));
+        personReader = objectMapper.readerFor(Person.class);
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+        person = createPerson(1L);
+        people = new ArrayList<>(listSize);
+        for (long id = 1; id <= listSize; id++) {
+            people.add(createPerson(id));
+        }
+        personJson = personWriter.writeValueAsBytes(person);
+    }
+
+    @Benchmark
+    public byte[] serializePerson() throws Exception {
+        return personWriter.writeValueAsBytes(person);
+    }
+
+    @Benchmark
+    public byte[] serializePeople() throws Exception {
+        return peopleWriter.writeValueAsBytes(people);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Person>> deserializeAndValidatePerson() throws Exception {
+        Person parsed = personReader.readValue(personJson);
+        return validator.validate(parsed);
+    }
+
+    static Person createPerson(long id) {
+        Set<Address> addresses = new HashSet<>();
+        for (long i = 0; i < 2; i++) {
+            addresses.add(new Address(id * 10 + i, "street-" + i, "city-" + i, "state-" + i, "postal-code-" + i, null));
+        }
+        return new Person(id, "first-name-" + id, "last-name-" + id, addresses);
+    }
+}
@@ -0,0 +1,132 @@
+package com.mercan.benchmark;
+
+import com.mercan.PersonServiceApplication;
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.Person;
+import com.mercan.person.pojo.BulkCreateResult;
+import com.mercan.person.pojo.CursorPage;
+import com.mercan.person.pojo.PersonLookup;
+import com.mercan.person.service.AddressService;
+import com.mercan.person.service.PersonService;
+import com.mercan.person.util.Cursors;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.mercan.person.constants.PersonServiceConstants.BULK_MAX_SIZE;
+
+/**
+ * Service calls against an embedded H2 database seeded with {@code datasetSize} people of two addresses each.
+ * Each dataset size gets its own in-memory database and application context. Add {@code -prof gc} to the JMH
+ * arguments for the bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ServiceBenchmark {
+
+    /** As many ids as an upstream service resolves in one of its requests. */
+    private static final int LOOKUP_SIZE = 30;
+
+    @Param({"1000", "10000", "100000"})
+    private int datasetSize;
+
+    private ConfigurableApplicationContext context;
+    private PersonService personService;
+    private AddressService addressService;
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(PersonServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark-" + datasetSize,
+                        "spring.jmx.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        personService = context.getBean(PersonService.class);
+        addressService = context.getBean(AddressService.class);
+
+        ids = new ArrayList<>(datasetSize);
+        for (int seeded = 0; seeded < datasetSize; seeded += BULK_MAX_SIZE) {
+            List<Person> people = new ArrayList<>();
+            for (int i = seeded; i < Math.min(seeded + BULK_MAX_SIZE, datasetSize); i++) {
+                people.add(createPerson(i));
+            }
+            BulkCreateResult result = personService.createPeople(people);
+            ids.addAll(result.getIds());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Person getPerson() {
+        return personService.getPerson(randomId());
+    }
+
+    @Benchmark
+    public List<Address> getAddress() {
+        return addressService.getAddress(randomId());
+    }
+
+    @Benchmark
+    public CursorPage<Person> getPeoplePage() {
+        return personService.getPeople(Cursors.encode(randomId()), 100);
+    }
+
+    @Benchmark
+    public PersonLookup lookupPeople() {
+        return personService.lookupPeople(randomIds());
+    }
+
+    @Benchmark
+    public List<Person> getPeopleOneByOne() {
+        List<Person> people = new ArrayList<>(LOOKUP_SIZE);
+        for (Long id : randomIds()) {
+            people.add(personService.getPerson(id));
+        }
+        return people;
+    }
+
+    @Benchmark
+    public long getPersonCountExact() {
+        return personService.getPersonCount(true);
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private List<Long> randomIds() {
+        List<Long> randomIds = new ArrayList<>(LOOKUP_SIZE);
+        for (int i = 0; i < LOOKUP_SIZE; i++) {
+            randomIds.add(randomId());
+        }
+        return randomIds;
+    }
+
+    private static Person createPerson(int i) {
+        Person person = Person.builder().firstName("first-name-" + i).lastName("last-name-" + i).build();
+        Address home = Address.builder().street("street-" + i).city("city-" + i % 100).state("state-" + i % 50).postalCode("postal-code-" + i).build();
+        Address work = Address.builder().street("work-street-" + i).city("city-" + i % 100).state("state-" + i % 50).postalCode("postal-code-" + i).build();
+        List<Address> addresses = new ArrayList<>();
+        Collections.addAll(addresses, home, work);
+        person.setAddress(new HashSet<>(addresses));
+        return person;
+    }
+}
@@ -0,0 +1,106 @@
+package com.mercan.benchmark;
+
+import com.mercan.PersonServiceApplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time to first request: starts the application in a fresh JVM, polls {@code GET /api/person?limit=1} until
+ * it answers and stops the JVM again, {@code startup.runs} times. Program arguments go to the application, e.g.
+ * {@code --spring.profiles.active=fast-startup}; {@code startup.java}, {@code startup.classpath} and
+ * {@code startup.jvm-args} say how it is launched. Each run's output is kept in {@code startup.output}.
+ * <p>
+ * {@code mvn -P startup -DskipTests verify} compares the default startup, the {@code fast-startup} profile and the
+ * profile with a class-data sharing archive. The archive is written by a training run launched with
+ * {@code -XX:ArchiveClassesAtExit}, when the JVM is stopped after serving its first request, so it also holds the
+ * classes of the request path. It needs JDK 13 or later to run the application.
+ */
+public class StartupBenchmark {
+
+    private static final long TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    public static void main(String[] args) throws Exception {
+        int runs = Integer.getInteger("startup.runs", 5);
+        String java = System.getProperty("startup.java", System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        String classpath = System.getProperty("startup.classpath", System.getProperty("java.class.path"));
+        String jvmArgs = System.getProperty("startup.jvm-args", "").trim();
+        File outputDirectory = new File(System.getProperty("startup.output", "target/startup"));
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("cannot create " + outputDirectory);
+        }
+
+        long[] millis = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            int port = freePort();
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            if (!jvmArgs.isEmpty()) {
+                command.addAll(Arrays.asList(jvmArgs.split("\\s+")));
+            }
+            command.addAll(Arrays.asList("-cp", classpath, PersonServiceApplication.class.getName(),
+                    "--server.port=" + port, "--spring.jmx.enabled=false"));
+            command.addAll(Arrays.asList(args));
+
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(new File(outputDirectory, "run-" + run + ".log"))
+                    .start();
+            try {
+                awaitFirstRequest(process, port);
+                millis[run] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            } finally {
+                stop(process);
+            }
+        }
+
+        Arrays.sort(millis);
+        System.out.printf("time to first request over %d runs with jvm args [%s] and arguments %s: min %d ms, median %d ms, max %d ms%n",
+                runs, jvmArgs, Arrays.toString(args), millis[0], millis[runs / 2], millis[runs - 1]);
+    }
+
+    private static void awaitFirstRequest(Process process, int port) throws Exception {
+        URL url = new URL("http://localhost:" + port + "/api/person?limit=1");
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("application exited with " + process.exitValue() + " before its first request");
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setConnectTimeout(100);
+                if (connection.getResponseCode() == 200) {
+                    return;
+                }
+            } catch (IOException notListeningYet) {
+                Thread.sleep(10);
+            }
+        }
+        throw new IllegalStateException("no answer within " + TIMEOUT_MILLIS + " ms");
+    }
+
+    /**
+     * Stops the application the way an orchestrator would, so the JVM exits normally and writes a class-data
+     * sharing archive when asked to.
+     */
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(1, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
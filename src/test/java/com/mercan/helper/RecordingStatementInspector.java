@@ -0,0 +1,22 @@
+package com.mercan.helper;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Remembers the last SQL statement Hibernate prepared, so tests can ask the database how it plans it.
+ * Register with {@code spring.jpa.properties.hibernate.session_factory.statement_inspector}.
+ */
+public class RecordingStatementInspector implements StatementInspector {
+
+    private static volatile String lastSql;
+
+    @Override
+    public String inspect(String sql) {
+        lastSql = sql;
+        return sql;
+    }
+
+    public static String getLastSql() {
+        return lastSql;
+    }
+}
@@ -2,12 +2,15 @@ package com.mercan.integration;
 
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.mercan.person.entity.Address;
 import com.mercan.person.entity.Person;
 import com.mercan.person.repository.AddressRepository;
 import com.mercan.person.repository.PersonRepository;
 import com.mercan.person.service.AddressService;
 import com.mercan.person.service.PersonService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,14 +18,34 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static com.mercan.helper.TestHelper.*;
+import static com.mercan.person.constants.PersonServiceConstants.ADDRESS_CACHE;
+import static com.mercan.person.constants.PersonServiceConstants.ADDRESS_SEQUENCE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -60,6 +83,15 @@ public class AddressIntegrationTest {
     @Autowired
     private AddressRepository addressRepository;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
 
     @BeforeEach
     public void setupTest() {
@@ -72,7 +104,8 @@ public class AddressIntegrationTest {
     }
     @AfterEach
     public void cleanUp(){
-        addressRepository.delete(storedAddress);
+        // reload so a version bumped by the test does not fail the delete
+        addressRepository.findById(storedAddress.getId()).ifPresent(addressRepository::delete);
     }
 
     @Test
@@ -89,6 +122,69 @@ public class AddressIntegrationTest {
                 .andExpect(jsonPath("[0].street", is(TEST_STREET)));
     }
 
+    @Test
+    public void get_all_address_expect_fixed_number_of_statements() throws Exception {
+        Address secondAddress = createTestAddress("second-city", TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
+        secondAddress.setPerson(storedPerson);
+        secondAddress = addressRepository.save(secondAddress);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        this.mockMvc
+                .perform(get(String.format(ADDRESS_ENDPOINT, storedPerson.getId()) + "/address")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+
+        // the ETag reads the version column, the addresses come from one query that also proves the person exists
+        assertThat(statistics.getPrepareStatementCount(), is(2L));
+        addressRepository.delete(secondAddress);
+    }
+
+    @Test
+    public void get_person_and_address_with_etag_expect_not_modified_until_address_changes() throws Exception {
+        String personEndpoint = "/api/person/" + storedPerson.getId();
+        String addressEndpoint = personEndpoint + "/address";
+        String etag = this.mockMvc
+                .perform(get(personEndpoint).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc
+                .perform(get(personEndpoint).header(HttpHeaders.IF_NONE_MATCH, etag).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+        this.mockMvc
+                .perform(get(addressEndpoint).header(HttpHeaders.IF_NONE_MATCH, etag).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+
+        Address newAddress = addressService.createAddress(storedPerson.getId(), createTestAddress("new-city", "new-postal-code", "new-state", "new-street"));
+
+        String changedEtag = this.mockMvc
+                .perform(get(addressEndpoint).header(HttpHeaders.IF_NONE_MATCH, etag).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(changedEtag, not(etag));
+        this.mockMvc
+                .perform(get(personEndpoint).header(HttpHeaders.IF_NONE_MATCH, changedEtag).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+        addressRepository.delete(newAddress);
+    }
+
+    @Test
+    public void get_all_address_expect_cache_evicted_on_create() {
+        addressService.getAddress(storedPerson.getId());
+        assertThat(cacheManager.getCache(ADDRESS_CACHE).get(storedPerson.getId()), notNullValue());
+
+        Address newAddress = createTestAddress("new-city", "new-postal-code", "new-state", "new-street");
+        newAddress = addressService.createAddress(storedPerson.getId(), newAddress);
+
+        assertThat(cacheManager.getCache(ADDRESS_CACHE).get(storedPerson.getId()), nullValue());
+        assertThat(addressService.getAddress(storedPerson.getId()), hasSize(2));
+        addressRepository.delete(newAddress);
+    }
+
     @Test
     public void save_address_valid_person_expect_success() throws Exception {
         Address newAddress = Address.builder().city("new-city").postalCode("new-postal-code").state("new-state").street("new-street").person(storedPerson).build();
@@ -123,6 +219,323 @@ public class AddressIntegrationTest {
     }
 
 
+    @Test
+    public void replace_addresses_expect_only_changed_rows_written() throws Exception {
+        String addressEndpoint = String.format(ADDRESS_ENDPOINT, storedPerson.getId()) + "/address";
+        Address removedAddress = createTestAddress("removed-city", TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
+        removedAddress.setPerson(storedPerson);
+        removedAddress = addressRepository.save(removedAddress);
+        String etag = this.mockMvc
+                .perform(get(addressEndpoint).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        String response = this.mockMvc
+                .perform(put(addressEndpoint)
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(asJsonString(objectMapper, Arrays.asList(
+                                createTestAddress(TEST_CITY, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET),
+                                createTestAddress("new-city", "new-postal-code", "new-state", "new-street"))))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(statistics.getEntityInsertCount(), is(1L));
+        assertThat(statistics.getEntityDeleteCount(), is(1L));
+        assertThat(addressRepository.findById(storedAddress.getId()).isPresent(), is(true));
+        assertThat(addressRepository.findById(removedAddress.getId()).isPresent(), is(false));
+        this.mockMvc
+                .perform(get(addressEndpoint).header(HttpHeaders.IF_NONE_MATCH, etag).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+        for (Address address : objectMapper.readValue(response, Address[].class)) {
+            if (!address.getId().equals(storedAddress.getId())) {
+                addressRepository.deleteById(address.getId());
+            }
+        }
+    }
+
+    @Test
+    public void replace_addresses_with_stale_if_match_expect_precondition_failed() throws Exception {
+        this.mockMvc
+                .perform(put(String.format(ADDRESS_ENDPOINT, storedPerson.getId()) + "/address")
+                        .header(HttpHeaders.IF_MATCH, "\"" + (storedPerson.getVersion() + 1) + "\"")
+                        .content(asJsonString(objectMapper, Collections.emptyList()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isPreconditionFailed());
+        assertThat(addressRepository.findById(storedAddress.getId()).isPresent(), is(true));
+    }
+
+    @Test
+    public void replace_addresses_with_weak_if_match_of_current_version_expect_precondition_failed() throws Exception {
+        this.mockMvc
+                .perform(put(String.format(ADDRESS_ENDPOINT, storedPerson.getId()) + "/address")
+                        .header(HttpHeaders.IF_MATCH, "W/\"" + storedPerson.getVersion() + "\"")
+                        .content(asJsonString(objectMapper, Collections.emptyList()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isPreconditionFailed());
+        assertThat(addressRepository.findById(storedAddress.getId()).isPresent(), is(true));
+    }
+
+
+    @Test
+    public void update_address_with_if_match_expect_only_current_version_applied() throws Exception {
+        String addressEndpoint = String.format(ADDRESS_ENDPOINT, storedPerson.getId()) + "/address";
+        String etag = this.mockMvc
+                .perform(get(addressEndpoint).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Address newAddress = Address.builder().city("new-city").postalCode("new-postal-code").state("new-state").street("new-street").build();
+
+        this.mockMvc
+                .perform(put(addressEndpoint + "/" + storedAddress.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(asJsonString(objectMapper, newAddress))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk());
+        this.mockMvc
+                .perform(put(addressEndpoint + "/" + storedAddress.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(asJsonString(objectMapper, createTestAddress("stale-city", TEST_POSTAL_CODE, TEST_STATE, TEST_STREET)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isPreconditionFailed());
+
+        Address stored = addressRepository.findById(storedAddress.getId()).get();
+        assertThat(stored.getCity(), is("new-city"));
+        assertThat(stored.getVersion(), is(storedAddress.getVersion() + 1));
+    }
+
+    @Test
+    public void update_address_expect_only_its_second_level_cache_entries_changed() throws Exception {
+
+        //given
+        Person otherPerson = personRepository.save(createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME));
+        personRepository.findWithAddressById(otherPerson.getId());
+        personRepository.findWithAddressById(storedPerson.getId());
+        String addressEndpoint = String.format(ADDRESS_ENDPOINT, storedPerson.getId()) + "/address/" + storedAddress.getId();
+
+        //when
+        this.mockMvc
+                .perform(put(addressEndpoint)
+                        .content(asJsonString(objectMapper, createTestAddress("cached-city", TEST_POSTAL_CODE, TEST_STATE, TEST_STREET)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk());
+
+        //then
+        javax.persistence.Cache secondLevelCache = entityManagerFactory.getCache();
+        assertThat(secondLevelCache.contains(Person.class, otherPerson.getId()), is(true));
+        assertThat(secondLevelCache.contains(Person.class, storedPerson.getId()), is(false));
+        assertThat(secondLevelCache.contains(Address.class, storedAddress.getId()), is(false));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertThat(personRepository.findWithAddressById(otherPerson.getId()).isPresent(), is(true));
+        assertThat(personRepository.findWithAddressById(storedPerson.getId()).get().getAddress().iterator().next().getCity(), is("cached-city"));
+        Long version = personService.getPersonVersion(storedPerson.getId());
+        assertThat(version, is(storedPerson.getVersion() + 1));
+        // the other person is still cached, the updated one and its addresses are read again, then the version column
+        assertThat(statistics.getPrepareStatementCount(), is(3L));
+        this.mockMvc
+                .perform(put(addressEndpoint)
+                        .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+                        .content(asJsonString(objectMapper, createTestAddress(TEST_CITY, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk());
+        personRepository.delete(otherPerson);
+    }
+
+    @Test
+    public void replace_addresses_expect_version_in_second_level_cache_current() throws Exception {
+
+        //given
+        String addressEndpoint = String.format(ADDRESS_ENDPOINT, storedPerson.getId()) + "/address";
+        personRepository.findWithAddressById(storedPerson.getId());
+
+        //when
+        this.mockMvc
+                .perform(put(addressEndpoint)
+                        .content(asJsonString(objectMapper, Collections.singletonList(
+                                createTestAddress("replaced-city", TEST_POSTAL_CODE, TEST_STATE, TEST_STREET))))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk());
+
+        //then
+        Long version = jdbcTemplate.queryForObject("select version from person where id = ?", Long.class, storedPerson.getId());
+        assertThat(personService.getPersonVersion(storedPerson.getId()), is(version));
+        assertThat(addressService.getAddress(storedPerson.getId()).get(0).getCity(), is("replaced-city"));
+        storedAddress = addressService.getAddress(storedPerson.getId()).get(0);
+    }
+
+    @Test
+    public void update_address_concurrently_with_same_if_match_expect_one_write_and_precondition_failed_for_the_rest() throws Exception {
+
+        //given
+        String addressEndpoint = String.format(ADDRESS_ENDPOINT, storedPerson.getId()) + "/address";
+        personRepository.findWithAddressById(storedPerson.getId());
+        String etag = this.mockMvc
+                .perform(get(addressEndpoint).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+
+        //when
+        for (int writer = 0; writer < writers; writer++) {
+            Address requested = createTestAddress("racing-city-" + writer, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
+            statuses.add(executor.submit(() -> {
+                start.await();
+                return this.mockMvc
+                        .perform(put(addressEndpoint + "/" + storedAddress.getId())
+                                .header(HttpHeaders.IF_MATCH, etag)
+                                .content(asJsonString(objectMapper, requested))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON))
+                        .andReturn().getResponse().getStatus();
+            }));
+        }
+        start.countDown();
+        List<Integer> answered = new ArrayList<>();
+        for (Future<Integer> status : statuses) {
+            answered.add(status.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        //then
+        assertThat(Collections.frequency(answered, HttpStatus.OK.value()), is(1));
+        assertThat(Collections.frequency(answered, HttpStatus.PRECONDITION_FAILED.value()), is(writers - 1));
+        Long version = jdbcTemplate.queryForObject("select version from person where id = ?", Long.class, storedPerson.getId());
+        assertThat(version, is(storedPerson.getVersion() + 1));
+        String city = jdbcTemplate.queryForObject("select city from address where id = ?", String.class, storedAddress.getId());
+        this.mockMvc
+                .perform(get(addressEndpoint).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].city", is(city)));
+    }
+
+    @Test
+    public void update_address_after_write_behind_cached_version_expect_precondition_failed_and_unconditional_write_applied() throws Exception {
+
+        //given
+        String addressEndpoint = String.format(ADDRESS_ENDPOINT, storedPerson.getId()) + "/address";
+        personRepository.findWithAddressById(storedPerson.getId());
+        String etag = this.mockMvc
+                .perform(get(addressEndpoint).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        jdbcTemplate.update("update person set version = version + 1 where id = ?", storedPerson.getId());
+
+        //when //then
+        this.mockMvc
+                .perform(put(addressEndpoint + "/" + storedAddress.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(asJsonString(objectMapper, createTestAddress("stale-city", TEST_POSTAL_CODE, TEST_STATE, TEST_STREET)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.reasonCode", is(HttpStatus.PRECONDITION_FAILED.name())));
+        this.mockMvc
+                .perform(put(addressEndpoint + "/" + storedAddress.getId())
+                        .content(asJsonString(objectMapper, createTestAddress("last-city", TEST_POSTAL_CODE, TEST_STATE, TEST_STREET)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk());
+        assertThat(personRepository.findWithAddressById(storedPerson.getId()).get().getVersion(), is(storedPerson.getVersion() + 2));
+        assertThat(addressService.getAddress(storedPerson.getId()).get(0).getCity(), is("last-city"));
+    }
+
+    @Test
+    public void update_address_of_other_person_expect_not_found() throws Exception {
+        Person otherPerson = personRepository.save(createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME));
+        Address newAddress = Address.builder().city("new-city").postalCode("new-postal-code").state("new-state").street("new-street").build();
+        this.mockMvc
+                .perform(put(String.format(ADDRESS_ENDPOINT, otherPerson.getId()) + "/address/" + storedAddress.getId())
+                        .content(asJsonString(objectMapper, newAddress))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotFound());
+
+        assertThat(addressRepository.findById(storedAddress.getId()).get().getCity(), is(TEST_CITY));
+        personRepository.delete(otherPerson);
+    }
+
+    @Test
+    public void save_address_for_missing_person_expect_not_found() throws Exception {
+        Address newAddress = Address.builder().city("new-city").postalCode("new-postal-code").state("new-state").street("new-street").build();
+        this.mockMvc
+                .perform(post(String.format(ADDRESS_ENDPOINT, Long.MAX_VALUE) + "/address")
+                        .content(asJsonString(objectMapper, newAddress))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void create_address_expect_fixed_number_of_statements() {
+        Long sequenceBefore = addressSequenceValue();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Address created = addressService.createAddress(storedPerson.getId(), createTestAddress("second-city", TEST_POSTAL_CODE, TEST_STATE, TEST_STREET));
+
+        // the version bump, one read of the address locations and the insert, plus a sequence read when the reserved ids ran out
+        long sequenceReads = addressSequenceValue().equals(sequenceBefore) ? 0 : 1;
+        assertThat(statistics.getPrepareStatementCount(), is(3L + sequenceReads));
+        addressRepository.deleteById(created.getId());
+    }
+
+    @Test
+    public void update_address_expect_fixed_number_of_statements() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        addressService.updateAddress(storedPerson.getId(), storedAddress.getId(), createTestAddress("second-city", TEST_POSTAL_CODE, TEST_STATE, TEST_STREET), null);
+
+        // the version bump, one read of the address locations and the update
+        assertThat(statistics.getPrepareStatementCount(), is(3L));
+    }
+
+    @Test
+    public void patch_address_expect_fixed_number_of_statements() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        addressService.patchAddress(storedPerson.getId(), storedAddress.getId(), JsonNodeFactory.instance.objectNode().put("city", "second-city"), null);
+
+        // the version bump, loading the address, one read of the address locations and the update
+        assertThat(statistics.getPrepareStatementCount(), is(4L));
+    }
+
+    @Test
+    public void delete_address_expect_fixed_number_of_statements() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        addressService.deleteAddress(storedAddress.getId(), storedPerson.getId());
+
+        // the version bump, one read of the address locations and the delete
+        assertThat(statistics.getPrepareStatementCount(), is(3L));
+    }
+
     @Test
     public void delete_address_expect_success() throws Exception {
         this.mockMvc
@@ -132,4 +545,9 @@ public class AddressIntegrationTest {
         assertThat(addressRepository.count(), is(0L));
 
     }
+
+    private Long addressSequenceValue() {
+        return jdbcTemplate.queryForObject("select current_value from information_schema.sequences where sequence_name = ?",
+                Long.class, ADDRESS_SEQUENCE.toUpperCase());
+    }
 }
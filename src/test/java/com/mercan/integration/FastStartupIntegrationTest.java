@@ -0,0 +1,136 @@
+package com.mercan.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.Person;
+import com.mercan.person.repository.PersonRepository;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.tool.hbm2ddl.SchemaValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.boot.orm.jpa.hibernate.SpringPhysicalNamingStrategy;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+
+import static com.mercan.helper.TestHelper.createTestPerson;
+import static com.mercan.person.constants.PersonServiceConstants.ADDRESS_SEQUENCE;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_SEQUENCE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the {@code fast-startup} profile on its own database, so the schema it gets is the prebuilt one alone.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:faststartuptest")
+@ActiveProfiles("fast-startup")
+@AutoConfigureMockMvc
+public class FastStartupIntegrationTest {
+    private static final String PERSON_ENDPOINT = "/api/person";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Value("${person.id.allocation-size}")
+    private long allocationSize;
+
+    @AfterEach
+    public void cleanUp() {
+        personRepository.deleteAll();
+    }
+
+    @Test
+    public void validate_prebuilt_schema_expect_matches_entity_mappings() {
+
+        //given
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DATASOURCE, dataSource)
+                .applySetting(AvailableSettings.DIALECT, H2Dialect.class.getName())
+                .applySetting(AvailableSettings.PHYSICAL_NAMING_STRATEGY, SpringPhysicalNamingStrategy.class.getName())
+                .applySetting(AvailableSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName())
+                .build();
+        try {
+            Metadata metadata = new MetadataSources(registry)
+                    .addAnnotatedClass(Person.class)
+                    .addAnnotatedClass(Address.class)
+                    .buildMetadata();
+
+            //when //then
+            new SchemaValidator().validate(metadata, registry);
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+
+    @Test
+    public void prebuilt_sequences_expect_incremented_by_configured_allocation_size() {
+
+        //given
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        String increment = "select increment from information_schema.sequences where sequence_name = ?";
+
+        //when //then
+        assertThat(jdbcTemplate.queryForObject(increment, Long.class, PERSON_SEQUENCE.toUpperCase()), is(allocationSize));
+        assertThat(jdbcTemplate.queryForObject(increment, Long.class, ADDRESS_SEQUENCE.toUpperCase()), is(allocationSize));
+    }
+
+    @Test
+    public void start_lazily_expect_request_path_created_and_http_clients_deferred() {
+
+        //when //then
+        assertThat(applicationContext.getBeanFactory().containsSingleton("personController"), is(true));
+        String[] restTemplateBuilders = applicationContext.getBeanNamesForType(RestTemplateBuilder.class, true, false);
+        assertThat(restTemplateBuilders.length, is(1));
+        assertThat(applicationContext.getBeanFactory().containsSingleton(restTemplateBuilders[0]), is(false));
+    }
+
+    @Test
+    public void create_person_expect_read_back() throws Exception {
+
+        //given
+        String created = this.mockMvc.perform(post(PERSON_ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(createTestPerson("fast-first", "fast-last"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        //when //then
+        this.mockMvc.perform(get(PERSON_ENDPOINT + "/" + objectMapper.readValue(created, Person.class).getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastName").value("fast-last"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.mercan.integration;
+
+import com.mercan.person.entity.Person;
+import com.mercan.person.repository.PersonRepository;
+import com.mercan.person.service.ReactiveIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.mercan.helper.TestHelper.createTestPerson;
+import static com.mercan.person.constants.PersonServiceConstants.ADDRESS_SEQUENCE;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_SEQUENCE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Runs with an allocation size other than the default, so ids reserved by the mapping's size would show.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "person.id.allocation-size=" + IdAllocationIntegrationTest.ALLOCATION_SIZE,
+        "spring.datasource.url=jdbc:h2:mem:idallocationtest",
+        "spring.r2dbc.url=r2dbc:h2:mem:///idallocationtest"})
+public class IdAllocationIntegrationTest {
+
+    static final int ALLOCATION_SIZE = 10;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private ReactiveIdGenerator reactiveIdGenerator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void cleanUp() {
+        personRepository.deleteAll();
+    }
+
+    @Test
+    public void generate_schema_expect_sequences_incremented_by_configured_allocation_size() {
+
+        //when //then
+        assertThat(increment(PERSON_SEQUENCE), is((long) ALLOCATION_SIZE));
+        assertThat(increment(ADDRESS_SEQUENCE), is((long) ALLOCATION_SIZE));
+    }
+
+    @Test
+    public void create_people_expect_ids_reserved_by_configured_allocation_size() {
+
+        //given
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i <= ALLOCATION_SIZE; i++) {
+            people.add(createTestPerson("allocation-first-" + i, "allocation-last"));
+        }
+
+        //when
+        List<Long> ids = personRepository.saveAll(people).stream().map(Person::getId).sorted().collect(Collectors.toList());
+
+        //then two blocks were reserved, the first of them used up
+        long first = ids.get(0);
+        assertThat(ids.get(ALLOCATION_SIZE), is(first + ALLOCATION_SIZE));
+        assertThat(nextValue(PERSON_SEQUENCE), is(first + 2 * ALLOCATION_SIZE));
+    }
+
+    @Test
+    public void generate_reactive_ids_expect_blocks_of_configured_allocation_size() {
+
+        //given
+        long first = reactiveIdGenerator.nextAddressId().block();
+
+        //when
+        long last = first;
+        for (int i = 0; i < ALLOCATION_SIZE; i++) {
+            last = reactiveIdGenerator.nextAddressId().block();
+        }
+
+        //then
+        assertThat(last, is(first + ALLOCATION_SIZE));
+        assertThat(nextValue(ADDRESS_SEQUENCE), is(first + 2 * ALLOCATION_SIZE));
+    }
+
+    private long increment(String sequence) {
+        return jdbcTemplate.queryForObject("select increment from information_schema.sequences where sequence_name = ?",
+                Long.class, sequence.toUpperCase());
+    }
+
+    private long nextValue(String sequence) {
+        return jdbcTemplate.queryForObject("select next value for " + sequence, Long.class);
+    }
+}
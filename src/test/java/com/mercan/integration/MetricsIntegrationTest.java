@@ -0,0 +1,47 @@
+package com.mercan.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+public class MetricsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void prometheus_endpoint_expect_web_service_repository_pool_and_hibernate_metrics() throws Exception {
+        this.mockMvc
+                .perform(get("/api/person").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        this.mockMvc
+                .perform(get("/api/report/person/count").param("exact", "true"))
+                .andExpect(status().isOk());
+
+        this.mockMvc
+                .perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{application=\"person-service\"")))
+                .andExpect(content().string(containsString("uri=\"/api/report/person/count\"")))
+                .andExpect(content().string(containsString("person_service_seconds_bucket{application=\"person-service\",class=\"PersonService\",exception=\"none\",method=\"getPeople\"")))
+                .andExpect(content().string(containsString("person_repository_seconds_count{application=\"person-service\",class=\"PersonRepository\",exception=\"none\",method=\"count\"")))
+                .andExpect(content().string(containsString("hikaricp_connections_usage_seconds")))
+                .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds")))
+                .andExpect(content().string(containsString("hibernate_statements_total")));
+    }
+}
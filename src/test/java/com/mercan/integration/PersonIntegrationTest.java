@@ -1,9 +1,17 @@
 package com.mercan.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.mercan.person.entity.Address;
 import com.mercan.person.entity.Person;
+import com.mercan.person.pojo.BulkCreateResult;
 import com.mercan.person.repository.PersonRepository;
+import com.mercan.person.service.PersonNameIndex;
 import com.mercan.person.service.PersonService;
+import com.mercan.person.util.Cursors;
+import com.mercan.person.util.ETags;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,15 +19,43 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.mercan.helper.TestHelper.asJsonString;
+import static com.mercan.helper.TestHelper.createTestAddress;
 import static com.mercan.helper.TestHelper.createTestPerson;
+import static com.mercan.person.constants.PersonServiceConstants.MERGE_PATCH_JSON_VALUE;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_CACHE;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_REGION;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
@@ -43,6 +79,18 @@ public class PersonIntegrationTest {
     @Autowired
     private PersonRepository personRepository;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    private PersonNameIndex personNameIndex;
+
     @BeforeEach
     public void setupTest() {
         storedPerson = createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME);
@@ -51,7 +99,8 @@ public class PersonIntegrationTest {
 
     @AfterEach
     public void cleanUp(){
-        personRepository.delete(storedPerson);
+        // reload so a version bumped by the test does not fail the delete
+        personRepository.findById(storedPerson.getId()).ifPresent(personRepository::delete);
     }
 
     @Test
@@ -67,6 +116,161 @@ public class PersonIntegrationTest {
     }
 
 
+    @Test
+    public void get_persons_page_expect_next_cursor_header() throws Exception {
+        Person secondPerson = personRepository.save(createTestPerson("second-first-name", "second-last-name"));
+
+        String nextCursor = this.mockMvc
+                .perform(get(PERSON_ENDPOINT)
+                        .param("limit", "1")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT)
+                        .param("after", nextCursor)
+                        .param("limit", "1")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        personRepository.delete(secondPerson);
+    }
+
+
+    @Test
+    public void export_persons_after_id_expect_ndjson_lines() throws Exception {
+        Person secondPerson = personRepository.save(createTestPerson("second-first-name", "second-last-name"));
+
+        MvcResult result = this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/export")
+                        .param("afterId", String.valueOf(storedPerson.getId()))
+                        .accept(MediaType.APPLICATION_NDJSON)
+                )
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = this.mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        assertThat(lines.length, is(1));
+        assertThat(objectMapper.readValue(lines[0], Person.class).getId(), is(secondPerson.getId()));
+
+        personRepository.delete(secondPerson);
+    }
+
+
+    @Test
+    public void get_persons_page_expect_fixed_number_of_statements() throws Exception {
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            people.add(personRepository.save(createTestPersonWithAddresses(2)));
+        }
+        Statistics statistics = resetStatistics();
+
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT)
+                        .param("after", Cursors.encode(storedPerson.getId()))
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("[0].address", hasSize(2)));
+
+        assertThat(statistics.getPrepareStatementCount(), is(2L));
+        // read-only, so never flushed
+        assertThat(statistics.getFlushCount(), is(0L));
+        personRepository.deleteAll(people);
+    }
+
+    @Test
+    public void lookup_persons_expect_one_statement_with_addresses_and_missing_ids() throws Exception {
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            people.add(personRepository.save(createTestPersonWithAddresses(2)));
+        }
+        Long missingId = people.get(2).getId() + 1000;
+        Statistics statistics = resetStatistics();
+
+        this.mockMvc
+                .perform(post(PERSON_ENDPOINT + "/lookup")
+                        .content(asJsonString(objectMapper, Arrays.asList(people.get(2).getId(), missingId, people.get(0).getId())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.people", hasSize(2)))
+                .andExpect(jsonPath("$.people[0].id", is(people.get(2).getId().intValue())))
+                .andExpect(jsonPath("$.people[0].address", hasSize(2)))
+                .andExpect(jsonPath("$.people[1].id", is(people.get(0).getId().intValue())))
+                .andExpect(jsonPath("$.missing", hasSize(1)))
+                .andExpect(jsonPath("$.missing[0]", is(missingId.intValue())));
+
+        assertThat(statistics.getPrepareStatementCount(), is(1L));
+        personRepository.deleteAll(people);
+    }
+
+    @Test
+    public void get_person_by_id_expect_person_from_second_level_cache_and_single_address_load() throws Exception {
+        Person person = personRepository.save(createTestPersonWithAddresses(3));
+        Statistics statistics = resetStatistics();
+
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/" + person.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.address", hasSize(3)));
+
+        // the ETag reads the version column, saving the person cached it and its address ids are read once
+        assertThat(statistics.getPrepareStatementCount(), is(2L));
+        personRepository.delete(person);
+
+        this.mockMvc
+                .perform(get("/actuator/metrics/hibernate.second.level.cache.requests")
+                        .param("tag", "region:" + PERSON_REGION)
+                        .param("tag", "result:hit")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value", greaterThanOrEqualTo(1.0)));
+    }
+
+
+    @Test
+    public void get_person_expect_cached_until_deleted() throws Exception {
+        Person person = personRepository.save(createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME));
+
+        personService.getPerson(person.getId());
+        Statistics statistics = resetStatistics();
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/" + person.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName", is(TEST_FIRST_NAME)));
+
+        assertThat(statistics.getPrepareStatementCount(), is(0L));
+        assertThat(cacheManager.getCache(PERSON_CACHE).get(person.getId()), notNullValue());
+
+        personService.delete(person.getId());
+        assertThat(cacheManager.getCache(PERSON_CACHE).get(person.getId()), nullValue());
+
+        this.mockMvc
+                .perform(get("/actuator/metrics/cache.gets")
+                        .param("tag", "cache:" + PERSON_CACHE)
+                        .param("tag", "result:hit")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value", greaterThanOrEqualTo(1.0)));
+    }
+
+
     @Test
     public void save_person_expect_success() throws Exception {
         Person newPerson = Person.builder().firstName("new-person-first-name").lastName("new-person-last-name").build();
@@ -81,6 +285,123 @@ public class PersonIntegrationTest {
                 .andExpect(jsonPath("$.lastName", is("new-person-last-name")));
     }
 
+    @Test
+    public void bulk_save_persons_expect_success() throws Exception {
+        List<Person> people = Arrays.asList(createTestPersonWithAddresses(2), createTestPersonWithAddresses(0), createTestPersonWithAddresses(1));
+        people.forEach(person -> person.getAddress().forEach(address -> address.setPerson(null)));
+        long countBefore = personRepository.count();
+
+        String response = this.mockMvc
+                .perform(post(PERSON_ENDPOINT + "/bulk")
+                        .content(asJsonString(objectMapper, people))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created", is(3)))
+                .andExpect(jsonPath("$.ids", hasSize(3)))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(personRepository.count(), is(countBefore + 3));
+        BulkCreateResult result = objectMapper.readValue(response, BulkCreateResult.class);
+        assertThat(personService.getPerson(result.getIds().get(0)).getAddress(), hasSize(2));
+        result.getIds().forEach(personService::delete);
+    }
+
+    @Test
+    public void bulk_save_persons_expect_pooled_ids_and_batched_inserts() {
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            people.add(createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME));
+        }
+        Statistics statistics = resetStatistics();
+
+        BulkCreateResult result = personService.createPeople(people);
+
+        // 200 inserts need 4 sequence calls with an allocation size of 50 and go out in 4 JDBC batches
+        assertThat(result.getCreated(), is(200));
+        assertThat(statistics.getPrepareStatementCount(), lessThanOrEqualTo(10L));
+        result.getIds().forEach(personRepository::deleteById);
+    }
+
+    @Test
+    public void bulk_save_persons_expect_item_errors() throws Exception {
+        Person invalidPerson = createTestPerson(TEST_FIRST_NAME, null);
+        Person personWithInvalidAddress = createTestPersonWithAddresses(2);
+        personWithInvalidAddress.getAddress().forEach(address -> address.setPerson(null));
+        // the second address in the request body
+        new ArrayList<>(personWithInvalidAddress.getAddress()).get(1).setCity(null);
+        long countBefore = personRepository.count();
+
+        this.mockMvc
+                .perform(post(PERSON_ENDPOINT + "/bulk")
+                        .content(asJsonString(objectMapper, Arrays.asList(createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME), invalidPerson, personWithInvalidAddress)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors", hasSize(2)))
+                .andExpect(jsonPath("$.errors[0]", is("[1].lastName: is mandatory")))
+                .andExpect(jsonPath("$.errors[1]", is("[2].address[1].city: is mandatory")));
+
+        assertThat(personRepository.count(), is(countBefore));
+    }
+
+    @Test
+    public void update_person_with_stale_if_match_expect_precondition_failed() throws Exception {
+        Person updatedPerson = createTestPerson("updated-first-name", TEST_LAST_NAME);
+        this.mockMvc
+                .perform(put(PERSON_ENDPOINT + "/" + storedPerson.getId())
+                        .header(HttpHeaders.IF_MATCH, ETags.of(storedPerson.getVersion() + 1))
+                        .content(asJsonString(objectMapper, updatedPerson))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.reasonCode", is(HttpStatus.PRECONDITION_FAILED.name())));
+
+        assertThat(personRepository.findById(storedPerson.getId()).get().getFirstName(), is(TEST_FIRST_NAME));
+    }
+
+    @Test
+    public void patch_person_expect_only_patched_column_written() throws Exception {
+        // a change made behind Hibernate's back survives because the patch does not rewrite last_name
+        jdbcTemplate.update("update person set last_name = ? where id = ?", "changed-last-name", storedPerson.getId());
+
+        this.mockMvc
+                .perform(patch(PERSON_ENDPOINT + "/" + storedPerson.getId())
+                        .content("{\"firstName\":\"patched-first-name\"}")
+                        .contentType(MERGE_PATCH_JSON_VALUE)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName", is("patched-first-name")));
+
+        // read past the second-level cache, which still holds the last name Hibernate knows about
+        assertThat(jdbcTemplate.queryForObject("select last_name from person where id = ?", String.class, storedPerson.getId()),
+                is("changed-last-name"));
+        Person stored = personRepository.findById(storedPerson.getId()).get();
+        assertThat(stored.getFirstName(), is("patched-first-name"));
+        assertThat(stored.getVersion(), is(storedPerson.getVersion() + 1));
+        storedPerson = stored;
+    }
+
+    @Test
+    public void patch_person_with_invalid_value_expect_nothing_written() throws Exception {
+        this.mockMvc
+                .perform(patch(PERSON_ENDPOINT + "/" + storedPerson.getId())
+                        .content("{\"firstName\":null}")
+                        .contentType(MERGE_PATCH_JSON_VALUE)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0]", is("firstName: is mandatory")));
+
+        Person stored = personRepository.findById(storedPerson.getId()).get();
+        assertThat(stored.getFirstName(), is(TEST_FIRST_NAME));
+        assertThat(stored.getVersion(), is(storedPerson.getVersion()));
+    }
+
     @Test
     public void update_person_expect_success() throws Exception {
         //given
@@ -97,10 +418,83 @@ public class PersonIntegrationTest {
                 .andExpect(jsonPath("$.lastName", is("updated-last-name")));
     }
 
+    @Test
+    public void update_person_with_retry_adding_addresses_expect_reapplied_after_conflict() {
+
+        //given a concurrent patch committed while the first attempt is between its read and its flush
+        AtomicBoolean raced = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (raced.compareAndSet(false, true)) {
+                CompletableFuture.runAsync(() -> personService.patchPerson(storedPerson.getId(),
+                        JsonNodeFactory.instance.objectNode().put("firstName", "concurrent-first-name"), null)).join();
+            }
+            return invocation.callRealMethod();
+        }).when(personNameIndex).put(any());
+        Person request = createTestPersonWithAddresses(2);
+        request.getAddress().forEach(address -> address.setPerson(null));
+
+        //when
+        Person updated = personService.updatePersonWithRetry(storedPerson.getId(), request, 3);
+
+        //then
+        assertThat(raced.get(), is(true));
+        assertThat(updated.getAddress().size(), is(2));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from address where person_id = ?", Long.class,
+                storedPerson.getId()), is(2L));
+        request.getAddress().forEach(address -> assertThat(address.getId(), is(nullValue())));
+    }
+
     @Test
     public void delete_person_expect_success() throws Exception {
         this.mockMvc
                 .perform(delete(PERSON_ENDPOINT + "/" + storedPerson.getId()))
                 .andExpect(status().isNoContent());
     }
+
+    @Test
+    public void search_names_expect_index_follows_create_patch_and_delete() throws Exception {
+        Person created = personService.createPerson(createTestPerson("Bartholomew", "Fitzgerald"));
+
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/search/names").param("q", "Bartolomew Fitzgerld").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("[0].id", is(created.getId().intValue())));
+
+        this.mockMvc
+                .perform(patch(PERSON_ENDPOINT + "/" + created.getId())
+                        .content("{\"lastName\":\"Quartermaine\"}")
+                        .contentType(MERGE_PATCH_JSON_VALUE)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/search/names").param("q", "Bartholomew Kwartermain").param("match", "phonetic").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("[0].lastName", is("Quartermaine")));
+
+        personService.delete(created.getId());
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/search/names").param("q", "Bartholomew Quartermaine").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    private Person createTestPersonWithAddresses(int addressCount) {
+        Person person = createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME);
+        Set<Address> addresses = new HashSet<>();
+        for (int i = 0; i < addressCount; i++) {
+            Address address = createTestAddress("city-" + i, "postal-code-" + i, "state-" + i, "street-" + i);
+            address.setPerson(person);
+            addresses.add(address);
+        }
+        person.setAddress(addresses);
+        return person;
+    }
+
+    private Statistics resetStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
 }
@@ -0,0 +1,67 @@
+package com.mercan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mercan.person.entity.Person;
+import com.mercan.person.repository.PersonRepository;
+import com.mercan.person.service.PersonService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mercan.helper.TestHelper.createTestPerson;
+import static com.mercan.person.constants.PersonServiceConstants.LOOKUP_PATH;
+import static com.mercan.person.constants.PersonServiceConstants.MAX_PAGE_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_PATH;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * The lookup over a real Tomcat, whose request line limit MockMvc does not have.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class PersonLookupHttpIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private PersonService personService;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @AfterEach
+    public void cleanUp() {
+        personRepository.deleteAll();
+    }
+
+    @Test
+    public void lookup_people_with_max_ids_expect_success() {
+
+        //given
+        Person person = personService.createPerson(createTestPerson("lookup-first", "lookup-last"));
+        List<Long> ids = new ArrayList<>(MAX_PAGE_SIZE);
+        ids.add(person.getId());
+        for (long id = Long.MAX_VALUE - MAX_PAGE_SIZE + 1; ids.size() < MAX_PAGE_SIZE; id++) {
+            ids.add(id);
+        }
+
+        //when
+        ResponseEntity<JsonNode> response = restTemplate.postForEntity(PERSON_PATH + LOOKUP_PATH, ids, JsonNode.class);
+
+        //then
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(response.getBody().get("people").size(), is(1));
+        assertThat(response.getBody().get("missing").size(), is(MAX_PAGE_SIZE - 1));
+    }
+}
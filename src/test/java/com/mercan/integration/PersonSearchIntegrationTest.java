@@ -0,0 +1,209 @@
+package com.mercan.integration;
+
+import com.mercan.helper.RecordingStatementInspector;
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.Person;
+import com.mercan.person.pojo.PersonSearch;
+import com.mercan.person.pojo.PersonSort;
+import com.mercan.person.repository.AddressRepository;
+import com.mercan.person.repository.PersonRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static com.mercan.helper.TestHelper.createTestAddress;
+import static com.mercan.person.constants.PersonServiceConstants.NEXT_CURSOR_HEADER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs on its own database because the statement inspector needs its own persistence unit.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:searchtest",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.mercan.helper.RecordingStatementInspector"})
+@AutoConfigureMockMvc
+public class PersonSearchIntegrationTest {
+
+    private static final String SEARCH_ENDPOINT = "/api/person/search";
+    private static final String TABLE_SCAN = "tableScan";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Person smith;
+
+    @BeforeEach
+    public void setupTest() {
+        smith = save("Anna", "Smith", createTestAddress("Springfield", "62701", "IL", "1 Main Street"));
+        save("Bob", "Smithers", createTestAddress("Shelbyville", "62565", "IL", "2 Main Street"));
+        save("Carl", "Smyth", createTestAddress("Springfield", "65801", "MO", "3 Main Street"));
+        save("Dan", "Jones", createTestAddress("Springfield", "62702", "IL", "4 Main Street"));
+        save("Eve", "Mixed", createTestAddress("Springfield", "65802", "MO", "5 Main Street"),
+                createTestAddress("Shelbyville", "62566", "IL", "6 Main Street"));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        personRepository.deleteAll();
+    }
+
+    @Test
+    public void search_by_last_name_prefix_expect_sorted_keyset_pages() throws Exception {
+        String nextCursor = this.mockMvc
+                .perform(get(SEARCH_ENDPOINT)
+                        .param("lastName", "Sm")
+                        .param("sort", "lastName")
+                        .param("limit", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[0].lastName", is("Smith")))
+                .andExpect(jsonPath("[1].lastName", is("Smithers")))
+                .andReturn().getResponse().getHeader(NEXT_CURSOR_HEADER);
+
+        this.mockMvc
+                .perform(get(SEARCH_ENDPOINT)
+                        .param("lastName", "Sm")
+                        .param("sort", "lastName")
+                        .param("limit", "2")
+                        .param("after", nextCursor)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("[0].lastName", is("Smyth")));
+    }
+
+    @Test
+    public void search_with_cursor_of_other_sort_expect_bad_request() throws Exception {
+        String lastNameCursor = this.mockMvc
+                .perform(get(SEARCH_ENDPOINT)
+                        .param("lastName", "Sm")
+                        .param("sort", "lastName")
+                        .param("limit", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(NEXT_CURSOR_HEADER);
+
+        this.mockMvc
+                .perform(get(SEARCH_ENDPOINT)
+                        .param("lastName", "Sm")
+                        .param("sort", "firstName")
+                        .param("after", lastNameCursor)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0]", is("after: is a cursor of a search sorted by lastName")));
+    }
+
+    @Test
+    public void search_by_first_name_prefix_descending_expect_reverse_order() throws Exception {
+        save("Anne", "Other");
+        this.mockMvc
+                .perform(get(SEARCH_ENDPOINT)
+                        .param("firstName", "Ann")
+                        .param("sort", "firstName")
+                        .param("direction", "desc")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[0].firstName", is("Anne")))
+                .andExpect(jsonPath("[1].firstName", is("Anna")));
+    }
+
+    @Test
+    public void search_by_city_and_state_expect_only_people_with_one_matching_address() throws Exception {
+        this.mockMvc
+                .perform(get(SEARCH_ENDPOINT)
+                        .param("city", "Springfield")
+                        .param("state", "IL")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[0].lastName", is("Smith")))
+                .andExpect(jsonPath("[0].address", hasSize(1)))
+                .andExpect(jsonPath("[1].lastName", is("Jones")));
+    }
+
+    @Test
+    public void search_with_like_wildcards_expect_them_matched_literally() throws Exception {
+        this.mockMvc
+                .perform(get(SEARCH_ENDPOINT)
+                        .param("lastName", "S%")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    public void search_by_name_prefix_expect_plan_on_name_index() {
+        personRepository.searchIds(PersonSearch.builder().lastName("Sm").sort(PersonSort.LAST_NAME).build(), null, 10);
+
+        String plan = explainLastQuery("Sm%", "\\", 10);
+
+        assertThat(plan, containsString("IDX_PERSON_LAST_NAME"));
+        assertThat(plan, not(containsString(TABLE_SCAN)));
+    }
+
+    @Test
+    public void search_by_address_expect_plan_on_address_indexes() {
+        personRepository.searchIds(PersonSearch.builder().city("Springfield").state("IL").build(), null, 10);
+        String cityAndStatePlan = explainLastQuery("Springfield", "IL", 10);
+
+        personRepository.searchIds(PersonSearch.builder().postalCode("62701").build(), null, 10);
+        String postalCodePlan = explainLastQuery("62701", 10);
+
+        assertThat(cityAndStatePlan, containsString("IDX_ADDRESS_STATE_CITY"));
+        assertThat(cityAndStatePlan, not(containsString(TABLE_SCAN)));
+        assertThat(postalCodePlan, containsString("IDX_ADDRESS_POSTAL_CODE"));
+        assertThat(postalCodePlan, not(containsString(TABLE_SCAN)));
+    }
+
+    @Test
+    public void get_addresses_of_person_expect_plan_on_person_id_index() {
+        addressRepository.findAllByExistingPersonId(smith.getId());
+
+        String plan = explainLastQuery(smith.getId());
+
+        assertThat(plan, containsString("IDX_ADDRESS_PERSON_ID"));
+        assertThat(plan, not(containsString(TABLE_SCAN)));
+    }
+
+    private String explainLastQuery(Object... parameters) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + RecordingStatementInspector.getLastSql(), String.class, parameters);
+    }
+
+    private Person save(String firstName, String lastName, Address... addresses) {
+        Person person = Person.builder().firstName(firstName).lastName(lastName).address(new HashSet<>(Arrays.asList(addresses))).build();
+        person.getAddress().forEach(address -> address.setPerson(person));
+        return personRepository.save(person);
+    }
+}
@@ -0,0 +1,259 @@
+package com.mercan.integration;
+
+
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.Person;
+import com.mercan.person.repository.PersonRepository;
+import com.mercan.person.service.PersonService;
+import com.mercan.person.util.Cursors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.mercan.helper.TestHelper.createTestAddress;
+import static com.mercan.helper.TestHelper.createTestPerson;
+import static com.mercan.person.constants.PersonServiceConstants.MERGE_PATCH_JSON_VALUE;
+import static com.mercan.person.constants.PersonServiceConstants.NEXT_CURSOR_HEADER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+@ExtendWith(SpringExtension.class)
+// the test context picks its web application type before profile files are read, so it is repeated here
+@SpringBootTest(properties = {
+        "spring.main.web-application-type=reactive",
+        "spring.datasource.url=jdbc:h2:mem:reactivetest",
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactivetest"})
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+public class ReactiveIntegrationTest {
+
+    private static final String PERSON_ENDPOINT = "/api/person";
+    private static final String TEST_STATE = "reactive-state";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private PersonService personService;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Test
+    public void create_person_with_address_expect_created_and_readable_with_etag() {
+
+        //given
+        Person person = createTestPerson("reactive-first", "reactive-last");
+        person.setAddress(new HashSet<>(Collections.singletonList(address("reactive-city", "street-1"))));
+
+        //when
+        Person created = create(person);
+
+        //then
+        assertThat(created.getAddress().iterator().next().getId() != null, is(true));
+        String etag = this.webTestClient.get().uri(PERSON_ENDPOINT + "/" + created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.firstName").isEqualTo("reactive-first")
+                .jsonPath("$.address[0].city").isEqualTo("reactive-city")
+                .jsonPath("$.version").doesNotExist()
+                .returnResult().getResponseHeaders().getETag();
+        this.webTestClient.get().uri(PERSON_ENDPOINT + "/" + created.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    public void create_invalid_person_expect_same_api_error_as_servlet_stack() {
+        this.webTestClient.post().uri(PERSON_ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(createTestPerson("", "reactive-last"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.reasonCode").isEqualTo(HttpStatus.BAD_REQUEST.name())
+                .jsonPath("$.errors[0]").isEqualTo("firstName: is mandatory");
+    }
+
+    @Test
+    public void get_missing_person_expect_not_found_api_error() {
+        this.webTestClient.get().uri(PERSON_ENDPOINT + "/" + Long.MAX_VALUE)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.reasonCode").isEqualTo(HttpStatus.NOT_FOUND.name())
+                .jsonPath("$.errors[0]").isEqualTo("Resource person with id " + Long.MAX_VALUE + " does not exist");
+    }
+
+    @Test
+    public void update_person_with_stale_if_match_expect_precondition_failed_then_current_one_succeeds() {
+
+        //given
+        Person created = create(createTestPerson("reactive-first", "reactive-last"));
+        String etag = this.webTestClient.get().uri(PERSON_ENDPOINT + "/" + created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Person.class).getResponseHeaders().getETag();
+
+        //when
+        this.webTestClient.patch().uri(PERSON_ENDPOINT + "/" + created.getId())
+                .contentType(MediaType.valueOf(MERGE_PATCH_JSON_VALUE))
+                .bodyValue("{\"lastName\":\"reactive-patched\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.ETAG, not(is(etag)));
+
+        //then
+        this.webTestClient.put().uri(PERSON_ENDPOINT + "/" + created.getId())
+                .header(HttpHeaders.IF_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(createTestPerson("reactive-first", "reactive-updated"))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED)
+                .expectBody()
+                .jsonPath("$.reasonCode").isEqualTo(HttpStatus.PRECONDITION_FAILED.name());
+        Person current = personRepository.findById(created.getId()).get();
+        assertThat(current.getLastName(), is("reactive-patched"));
+        this.webTestClient.put().uri(PERSON_ENDPOINT + "/" + created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"" + current.getVersion() + "\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(createTestPerson("reactive-first", "reactive-updated"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.lastName").isEqualTo("reactive-updated");
+    }
+
+    @Test
+    public void address_writes_expect_person_version_bumped_and_report_aggregates_kept_exact() {
+
+        //given
+        Person created = create(createTestPerson("reactive-first", "reactive-last"));
+        String addressEndpoint = PERSON_ENDPOINT + "/" + created.getId() + "/address";
+        Address address = this.webTestClient.post().uri(addressEndpoint)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(address("reactive-city-a", "street-1"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Address.class).returnResult().getResponseBody();
+        Long version = personRepository.findVersionById(created.getId()).get();
+
+        //when
+        this.webTestClient.patch().uri(addressEndpoint + "/" + address.getId())
+                .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+                .contentType(MediaType.valueOf(MERGE_PATCH_JSON_VALUE))
+                .bodyValue("{\"city\":\"reactive-city-b\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.city").isEqualTo("reactive-city-b");
+        this.webTestClient.delete().uri(addressEndpoint + "/" + Long.MAX_VALUE)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        //then
+        this.webTestClient.get().uri(addressEndpoint)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + version + "\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].city").isEqualTo("reactive-city-b");
+        assertThat(cityReport(false), is(cityReport(true)));
+        this.webTestClient.delete().uri(PERSON_ENDPOINT + "/" + created.getId())
+                .exchange()
+                .expectStatus().isNoContent();
+        assertThat(cityReport(false), is("[]"));
+    }
+
+    @Test
+    public void replace_addresses_expect_unchanged_address_kept() {
+
+        //given
+        Person person = createTestPerson("reactive-first", "reactive-last");
+        person.setAddress(new HashSet<>(Arrays.asList(address("reactive-city", "street-1"), address("reactive-city", "street-2"))));
+        Person created = create(person);
+        Address kept = created.getAddress().stream().filter(address -> address.getStreet().equals("street-1")).findFirst().get();
+
+        //when
+        List<Address> replaced = this.webTestClient.put().uri(PERSON_ENDPOINT + "/" + created.getId() + "/address")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Arrays.asList(address("reactive-city", "street-1"), address("reactive-city", "street-3")))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Address.class).returnResult().getResponseBody();
+
+        //then
+        assertThat(replaced.stream().map(Address::getStreet).collect(Collectors.toList()), contains("street-1", "street-3"));
+        assertThat(replaced.get(0).getId(), is(kept.getId()));
+    }
+
+    @Test
+    public void get_people_as_ndjson_and_export_expect_people_of_both_stacks_in_id_order() {
+
+        //given
+        Person first = create(createTestPerson("reactive-first", "reactive-page"));
+        Person second = personService.createPerson(createTestPerson("servlet-second", "reactive-page"));
+        Person third = create(createTestPerson("reactive-third", "reactive-page"));
+        // each stack reserves its own block of ids, so creation order is not id order
+        List<Long> ids = Arrays.asList(first.getId(), second.getId(), third.getId());
+        Collections.sort(ids);
+
+        //when
+        List<Person> page = this.webTestClient.get()
+                .uri(PERSON_ENDPOINT + "?limit=2&after=" + Cursors.encode(ids.get(0) - 1))
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(NEXT_CURSOR_HEADER, Cursors.encode(ids.get(1)))
+                .returnResult(Person.class).getResponseBody().collectList().block();
+        List<Person> exported = this.webTestClient.get()
+                .uri(PERSON_ENDPOINT + "/export?afterId=" + ids.get(1))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Person.class).getResponseBody().collectList().block();
+
+        //then
+        assertThat(page.stream().map(Person::getId).collect(Collectors.toList()), contains(ids.get(0), ids.get(1)));
+        assertThat(exported.get(0).getId(), is(ids.get(2)));
+        assertThat(exported.get(0).getLastName(), is("reactive-page"));
+    }
+
+    private Person create(Person person) {
+        return this.webTestClient.post().uri(PERSON_ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(person)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Person.class).returnResult().getResponseBody();
+    }
+
+    private String cityReport(boolean exact) {
+        return this.webTestClient.get().uri("/api/report/person/city?state=" + TEST_STATE + "&exact=" + exact)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+    }
+
+    private static Address address(String city, String street) {
+        return createTestAddress(city, "reactive-postal-code", TEST_STATE, street);
+    }
+}
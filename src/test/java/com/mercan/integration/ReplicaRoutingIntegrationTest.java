@@ -0,0 +1,210 @@
+package com.mercan.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercan.person.entity.Person;
+import com.mercan.person.repository.PersonRepository;
+import com.mercan.person.service.PersonService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.Cookie;
+
+import static com.mercan.helper.TestHelper.createTestPerson;
+import static com.mercan.person.constants.PersonServiceConstants.ADDRESS_CACHE;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_CACHE;
+import static com.mercan.person.constants.PersonServiceConstants.READ_PRIMARY_COOKIE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two H2 databases stand in for the primary and a replica. Nothing replicates between them, so each test puts on the
+ * replica exactly what it should see there. The caches keep their default configuration, and tests reading a person
+ * the primary wrote clear them first, as the cache would answer before any routing.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routingprimary",
+        "person.datasource.replica-urls=" + ReplicaRoutingIntegrationTest.REPLICA_URL})
+@AutoConfigureMockMvc
+public class ReplicaRoutingIntegrationTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:routingreplica";
+    private static final String PERSON_ENDPOINT = "/api/person";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PersonService personService;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "password"));
+
+    @BeforeEach
+    public void setupTest() {
+        if (replica.queryForObject("select count(*) from information_schema.tables where table_name = 'PERSON'", Integer.class) == 0) {
+            jdbcTemplate.queryForList("script nodata", String.class).forEach(replica::execute);
+        }
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        personRepository.deleteAll();
+        replica.update("delete from address");
+        replica.update("delete from person");
+    }
+
+    @Test
+    public void get_person_expect_read_from_replica() throws Exception {
+
+        //given
+        Person person = personService.createPerson(createTestPerson("routing-first", "on-primary"));
+        replicate(person.getId(), "on-replica");
+        clearCaches();
+
+        //when //then
+        this.mockMvc.perform(get(PERSON_ENDPOINT + "/" + person.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastName").value("on-replica"));
+    }
+
+    @Test
+    public void get_person_from_replica_expect_caches_not_filled_for_reads_held_on_primary() throws Exception {
+
+        //given a replica lagging behind the primary
+        Person person = personService.createPerson(createTestPerson("routing-first", "on-primary"));
+        replicate(person.getId(), "on-replica");
+        clearCaches();
+        this.mockMvc.perform(get(PERSON_ENDPOINT + "/" + person.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastName").value("on-replica"));
+        this.mockMvc.perform(get(PERSON_ENDPOINT + "/" + person.getId() + "/address"))
+                .andExpect(status().isOk());
+
+        //when //then
+        assertThat(entityManagerFactory.getCache().contains(Person.class, person.getId()), is(false));
+        assertThat(cacheManager.getCache(PERSON_CACHE).get(person.getId()), is(nullValue()));
+        assertThat(cacheManager.getCache(ADDRESS_CACHE).get(person.getId()), is(nullValue()));
+        this.mockMvc.perform(get(PERSON_ENDPOINT + "/" + person.getId()).cookie(new Cookie(READ_PRIMARY_COOKIE, "true")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastName").value("on-primary"));
+        // a read on the primary fills the caches again
+        assertThat(entityManagerFactory.getCache().contains(Person.class, person.getId()), is(true));
+        assertThat(cacheManager.getCache(PERSON_CACHE).get(person.getId()) != null, is(true));
+    }
+
+    @Test
+    public void lookup_people_expect_read_from_replica_without_holding_on_primary() throws Exception {
+
+        //given
+        Person person = personService.createPerson(createTestPerson("routing-first", "on-primary"));
+        replicate(person.getId(), "on-replica");
+        clearCaches();
+
+        //when //then
+        this.mockMvc.perform(post(PERSON_ENDPOINT + "/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + person.getId() + "]"))
+                .andExpect(status().isOk())
+                .andExpect(cookie().doesNotExist(READ_PRIMARY_COOKIE))
+                .andExpect(jsonPath("$.people[0].lastName").value("on-replica"));
+        assertThat(cacheManager.getCache(PERSON_CACHE).get(person.getId()), is(nullValue()));
+    }
+
+    @Test
+    public void create_person_expect_written_to_primary_and_read_back_by_writer_only() throws Exception {
+
+        //when
+        Cookie readPrimary = this.mockMvc.perform(post(PERSON_ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(createTestPerson("routing-first", "on-primary"))))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().maxAge(READ_PRIMARY_COOKIE, 5))
+                .andReturn().getResponse().getCookie(READ_PRIMARY_COOKIE);
+
+        //then
+        Long id = jdbcTemplate.queryForObject("select id from person where last_name = 'on-primary'", Long.class);
+        assertThat(replica.queryForObject("select count(*) from person", Integer.class), is(0));
+        // the replica has not caught up yet, only the writer is sent to the primary
+        this.mockMvc.perform(get(PERSON_ENDPOINT + "/" + id).cookie(readPrimary))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastName").value("on-primary"));
+        // what the writer's read cached would answer anyone, without it the others read the replica
+        clearCaches();
+        this.mockMvc.perform(get(PERSON_ENDPOINT + "/" + id))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void delete_person_missing_on_replica_expect_found_on_primary() throws Exception {
+
+        //given
+        Person person = personService.createPerson(createTestPerson("routing-first", "on-primary"));
+
+        //when
+        this.mockMvc.perform(delete(PERSON_ENDPOINT + "/" + person.getId()))
+                .andExpect(status().isNoContent());
+
+        //then
+        assertThat(personRepository.existsById(person.getId()), is(false));
+    }
+
+    @Test
+    public void count_exact_expect_reconciled_against_primary() throws Exception {
+
+        //given
+        Person person = personService.createPerson(createTestPerson("routing-first", "on-primary"));
+        replicate(person.getId(), "on-replica");
+        personService.createPerson(createTestPerson("routing-second", "on-primary"));
+
+        //when //then
+        this.mockMvc.perform(get("/api/report/person/count").param("exact", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+    }
+
+    private void clearCaches() {
+        entityManagerFactory.getCache().evictAll();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    private void replicate(Long id, String lastName) {
+        jdbcTemplate.queryForList("select id, first_name, version from person where id = ?", id).forEach(row ->
+                replica.update("insert into person (id, first_name, last_name, version) values (?, ?, ?, ?)",
+                        row.get("ID"), row.get("FIRST_NAME"), lastName, row.get("VERSION")));
+    }
+}
@@ -0,0 +1,96 @@
+package com.mercan.integration;
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.Person;
+import com.mercan.person.service.AddressService;
+import com.mercan.person.service.PersonService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static com.mercan.helper.TestHelper.createTestAddress;
+import static com.mercan.helper.TestHelper.createTestPerson;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ReportingIntegrationTest {
+
+    private static final String CITY_REPORT_ENDPOINT = "/api/report/person/city";
+    private static final String TEST_STATE = "report-state";
+
+    @Autowired
+    PersonService personService;
+
+    @Autowired
+    AddressService addressService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void report_people_by_city_expect_incremental_counts_match_database() throws Exception {
+
+        //given
+        Person first = createTestPerson("report-first", "report-person");
+        first.setAddress(new HashSet<>(Arrays.asList(address("report-city-a", "street-1"), address("report-city-a", "street-2"))));
+        first = personService.createPerson(first);
+        Person second = createTestPerson("report-second", "report-person");
+        second.setAddress(new HashSet<>(Collections.singletonList(address("report-city-a", "street-3"))));
+        second = personService.createPerson(second);
+
+        //when
+        Address moved = addressService.createAddress(second.getId(), address("report-city-b", "street-4"));
+        addressService.patchAddress(second.getId(), moved.getId(),
+                objectMapper.readTree("{\"city\":\"report-city-c\"}"), null);
+        personService.delete(first.getId());
+
+        //then
+        String incremental = cityReport(false);
+        assertThat(incremental, is(cityReport(true)));
+        this.mockMvc
+                .perform(get(CITY_REPORT_ENDPOINT).param("state", TEST_STATE).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[0].city", is("report-city-a")))
+                .andExpect(jsonPath("$[0].people", is(1)))
+                .andExpect(jsonPath("$[1].city", is("report-city-c")))
+                .andExpect(jsonPath("$[1].people", is(1)));
+
+        personService.delete(second.getId());
+        assertThat(cityReport(false), is("[]"));
+    }
+
+    private String cityReport(boolean exact) throws Exception {
+        return this.mockMvc
+                .perform(get(CITY_REPORT_ENDPOINT)
+                        .param("state", TEST_STATE)
+                        .param("exact", String.valueOf(exact))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private static Address address(String city, String street) {
+        return createTestAddress(city, "report-postal-code", TEST_STATE, street);
+    }
+}
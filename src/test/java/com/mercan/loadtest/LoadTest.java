@@ -0,0 +1,99 @@
+package com.mercan.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercan.PersonServiceApplication;
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.Person;
+import com.mercan.person.service.PersonService;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.mercan.person.constants.PersonServiceConstants.BULK_MAX_SIZE;
+
+/**
+ * Boots the application on a random port against a seeded in-memory database and drives it through
+ * {@link OpenModelDriver} at each configured rate in turn, after a warmup at the first rate.
+ * <p>
+ * {@code mvn -P load-test -DskipTests verify -Dloadtest.args="-Dloadtest.rates=500,1000 -Dloadtest.duration-seconds=60"}
+ * <p>
+ * Program arguments are handed to the application, e.g. {@code --logging.level.com.mercan=INFO}. Running on JDK 21
+ * with {@code -Dspring.profiles.active=virtual-threads} compares the virtual-thread mode against the default
+ * platform-thread pool and {@code -Dspring.profiles.active=reactive} serves the same API from the WebFlux and R2DBC
+ * stack instead; {@code -Dloadtest.db-latency-ms} adds a fixed delay to every statement to model the slow database
+ * under which the modes differ.
+ * <p>
+ * Each step also logs how many JDBC statements Hibernate prepared per request, which shows what the caches save.
+ */
+@Slf4j
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        // keep one idle keep-alive connection per client instead of the JDK default of five
+        System.setProperty("http.maxConnections", String.valueOf(config.getClients()));
+
+        SpringApplicationBuilder application = new SpringApplicationBuilder(PersonServiceApplication.class);
+        if (config.getDbLatencyMillis() > 0) {
+            application.initializers(applicationContext -> applicationContext.getBeanFactory()
+                    .addBeanPostProcessor(new SlowDataSource(config.getDbLatencyMillis())));
+        }
+        ConfigurableApplicationContext context = application
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:loadtest",
+                        "spring.r2dbc.url=r2dbc:h2:mem:///loadtest",
+                        "spring.jmx.enabled=false",
+                        "logging.level.root=WARN",
+                        "logging.level.com.mercan.loadtest=INFO")
+                .run(args);
+        try {
+            List<Long> seededIds = seed(context.getBean(PersonService.class), config.getDatasetSize());
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            PersonApiClient client = new PersonApiClient(baseUrl, context.getBean(ObjectMapper.class), seededIds);
+            OpenModelDriver driver = new OpenModelDriver(client, config.getClients(), config.getMix());
+
+            log.info("warming up at {}/s for {}s", config.getRates().get(0), config.getWarmupSeconds());
+            driver.run(config.getRates().get(0), config.getWarmupSeconds(), config.getSeed());
+
+            Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+            List<StepResult> steps = new ArrayList<>();
+            for (int rate : config.getRates()) {
+                log.info("running at {}/s for {}s", rate, config.getDurationSeconds());
+                statistics.clear();
+                StepResult step = driver.run(rate, config.getDurationSeconds(), config.getSeed() + rate);
+                log.info("{} statements per request at {}/s", String.format("%.2f",
+                        statistics.getPrepareStatementCount() / (double) step.getRequests()), rate);
+                steps.add(step);
+            }
+            System.out.println(new LoadTestReport(config).write(steps));
+            log.info("report written to {}", config.getOutputDirectory().getAbsolutePath());
+        } finally {
+            context.close();
+        }
+    }
+
+    private static List<Long> seed(PersonService personService, int datasetSize) {
+        List<Long> ids = new ArrayList<>(datasetSize);
+        for (int seeded = 0; seeded < datasetSize; seeded += BULK_MAX_SIZE) {
+            List<Person> people = new ArrayList<>();
+            for (int i = seeded; i < Math.min(seeded + BULK_MAX_SIZE, datasetSize); i++) {
+                Person person = Person.builder().firstName("first-name-" + i).lastName("last-name-" + i).build();
+                person.setAddress(new HashSet<>(Arrays.asList(
+                        Address.builder().street("street-" + i).city("city-" + i % 100).state("state-" + i % 50).postalCode("postal-code-" + i).build(),
+                        Address.builder().street("work-street-" + i).city("city-" + i % 100).state("state-" + i % 50).postalCode("postal-code-" + i).build())));
+                people.add(person);
+            }
+            ids.addAll(personService.createPeople(people).getIds());
+        }
+        return ids;
+    }
+}
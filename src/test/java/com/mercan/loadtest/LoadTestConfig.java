@@ -0,0 +1,62 @@
+package com.mercan.loadtest;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load test settings, read from {@code loadtest.*} system properties.
+ */
+@Data
+@Builder
+public class LoadTestConfig {
+
+    private static final String DEFAULT_MIX = "getPerson:35,getPeople:10,getAddress:20,count:5,"
+            + "createPerson:8,updatePerson:5,deletePerson:2,createAddress:8,updateAddress:5,deleteAddress:2";
+
+    private int datasetSize;
+    private List<Integer> rates;
+    private int warmupSeconds;
+    private int durationSeconds;
+    private int clients;
+    private int dbLatencyMillis;
+    private Map<Operation, Integer> mix;
+    private long seed;
+    private File outputDirectory;
+
+    public static LoadTestConfig fromSystemProperties() {
+        return LoadTestConfig.builder()
+                .datasetSize(Integer.getInteger("loadtest.dataset", 10000))
+                .rates(parseRates(System.getProperty("loadtest.rates", "250,500,1000,2000")))
+                .warmupSeconds(Integer.getInteger("loadtest.warmup-seconds", 10))
+                .durationSeconds(Integer.getInteger("loadtest.duration-seconds", 30))
+                .clients(Integer.getInteger("loadtest.clients", 64))
+                .dbLatencyMillis(Integer.getInteger("loadtest.db-latency-ms", 0))
+                .mix(parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)))
+                .seed(Long.getLong("loadtest.seed", 42L))
+                .outputDirectory(new File(System.getProperty("loadtest.output", "target/load-test")))
+                .build();
+    }
+
+    private static List<Integer> parseRates(String rates) {
+        List<Integer> parsed = new ArrayList<>();
+        for (String rate : rates.split(",")) {
+            parsed.add(Integer.parseInt(rate.trim()));
+        }
+        return parsed;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> parsed = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split(":");
+            parsed.put(Operation.byName(weight[0].trim()), Integer.parseInt(weight[1].trim()));
+        }
+        return parsed;
+    }
+}
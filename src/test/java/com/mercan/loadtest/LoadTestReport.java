@@ -0,0 +1,80 @@
+package com.mercan.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes throughput against latency for every step: a readable {@code report.txt}, a {@code summary.csv} for plotting
+ * and one HdrHistogram percentile distribution ({@code step-<rate>.hgrm}) per step, all latencies in milliseconds.
+ */
+public class LoadTestReport {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private static final String ROW = "%-16s %10s %10s %9s %7s %9s %9s %9s %9s %9s%n";
+
+    private final LoadTestConfig config;
+
+    public LoadTestReport(LoadTestConfig config) {
+        this.config = config;
+    }
+
+    public String write(List<StepResult> steps) throws IOException {
+        File directory = config.getOutputDirectory();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        StringWriter text = new StringWriter();
+        PrintWriter report = new PrintWriter(text);
+        report.printf("dataset=%d clients=%d db-latency=%dms warmup=%ds duration=%ds seed=%d mix=%s%n%n", config.getDatasetSize(),
+                config.getClients(), config.getDbLatencyMillis(), config.getWarmupSeconds(), config.getDurationSeconds(),
+                config.getSeed(), config.getMix());
+        report.printf(ROW, "operation", "target/s", "actual/s", "requests", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        StringBuilder csv = new StringBuilder("target_rate,throughput,requests,errors,p50_ms,p90_ms,p99_ms,p999_ms,max_ms\n");
+        for (StepResult step : steps) {
+            Histogram total = step.total();
+            row(report, "all", step.getTargetRate(), step.throughput(), total, step.totalErrors());
+            for (Map.Entry<Operation, Histogram> operation : step.getHistograms().entrySet()) {
+                row(report, "  " + operation.getKey().getName(), step.getTargetRate(), Double.NaN, operation.getValue(), step.getErrors().get(operation.getKey()));
+            }
+            report.println();
+            csv.append(String.format("%d,%.1f,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f%n", step.getTargetRate(), step.throughput(),
+                    total.getTotalCount(), step.totalErrors(), millis(total, 50), millis(total, 90), millis(total, 99),
+                    millis(total, 99.9), total.getMaxValue() / MICROS_PER_MILLI));
+            writeDistribution(new File(directory, "step-" + step.getTargetRate() + ".hgrm"), total);
+        }
+        report.flush();
+        Files.write(new File(directory, "report.txt").toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "summary.csv").toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+        return text.toString();
+    }
+
+    private static void row(PrintWriter report, String name, int targetRate, double throughput, Histogram histogram, long errors) {
+        report.printf(ROW, name, targetRate, Double.isNaN(throughput) ? "" : String.format("%.1f", throughput),
+                histogram.getTotalCount(), errors, format(millis(histogram, 50)), format(millis(histogram, 90)),
+                format(millis(histogram, 99)), format(millis(histogram, 99.9)), format(histogram.getMaxValue() / MICROS_PER_MILLI));
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+    }
+
+    private static String format(double millis) {
+        return String.format("%.3f", millis);
+    }
+
+    private static void writeDistribution(File file, Histogram histogram) throws FileNotFoundException {
+        try (PrintStream out = new PrintStream(file)) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.mercan.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Issues requests at a fixed arrival rate regardless of how fast the server answers (an open workload model).
+ * Every request has an intended start time on that schedule and its latency is measured from there, so time spent
+ * queued behind a slow response is counted instead of silently dropped (coordinated omission).
+ */
+@Slf4j
+public class OpenModelDriver {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final PersonApiClient client;
+    private final int clients;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    public OpenModelDriver(PersonApiClient client, int clients, Map<Operation, Integer> mix) {
+        this.client = client;
+        this.clients = clients;
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public StepResult run(int rate, int durationSeconds, long seed) throws InterruptedException {
+        Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+        for (Operation operation : operations) {
+            histograms.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS));
+            errors.put(operation, new AtomicLong());
+        }
+        AtomicLong lastCompletion = new AtomicLong();
+        SplittableRandom random = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long scheduled = 0;
+        for (long intendedStart = start; intendedStart < end; intendedStart = start + ++scheduled * intervalNanos) {
+            long wait;
+            while ((wait = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = pick(random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]));
+            long key = random.nextLong();
+            long intended = intendedStart;
+            executor.execute(() -> {
+                boolean failed;
+                try {
+                    int status = operation.execute(client, key);
+                    failed = status >= 400;
+                } catch (Exception e) {
+                    log.debug("{} failed", operation.getName(), e);
+                    failed = true;
+                }
+                long completed = System.nanoTime();
+                histograms.get(operation).recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(completed - intended), HIGHEST_TRACKABLE_MICROS));
+                if (failed) {
+                    errors.get(operation).incrementAndGet();
+                }
+                lastCompletion.accumulateAndGet(completed, Math::max);
+            });
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.MINUTES)) {
+            executor.shutdownNow();
+        }
+
+        Map<Operation, Long> errorCounts = new EnumMap<>(Operation.class);
+        errors.forEach((operation, count) -> errorCounts.put(operation, count.get()));
+        long elapsedNanos = Math.max(lastCompletion.get(), end) - start;
+        return new StepResult(rate, scheduled, elapsedNanos, histograms, errorCounts);
+    }
+
+    private Operation pick(int weight) {
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (weight < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+}
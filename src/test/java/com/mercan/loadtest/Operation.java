@@ -0,0 +1,50 @@
+package com.mercan.loadtest;
+
+import java.io.IOException;
+
+/**
+ * The REST calls a load test can mix, each returning the HTTP status of the response.
+ */
+public enum Operation {
+
+    GET_PERSON("getPerson", PersonApiClient::getPerson),
+    GET_PEOPLE("getPeople", PersonApiClient::getPeople),
+    GET_ADDRESS("getAddress", PersonApiClient::getAddress),
+    COUNT("count", PersonApiClient::count),
+    CREATE_PERSON("createPerson", PersonApiClient::createPerson),
+    UPDATE_PERSON("updatePerson", PersonApiClient::updatePerson),
+    DELETE_PERSON("deletePerson", PersonApiClient::deletePerson),
+    CREATE_ADDRESS("createAddress", PersonApiClient::createAddress),
+    UPDATE_ADDRESS("updateAddress", PersonApiClient::updateAddress),
+    DELETE_ADDRESS("deleteAddress", PersonApiClient::deleteAddress);
+
+    private final String name;
+    private final Call call;
+
+    Operation(String name, Call call) {
+        this.name = name;
+        this.call = call;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int execute(PersonApiClient client, long key) throws IOException {
+        return call.execute(client, key);
+    }
+
+    public static Operation byName(String name) {
+        for (Operation operation : values()) {
+            if (operation.name.equals(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("unknown operation: " + name);
+    }
+
+    @FunctionalInterface
+    interface Call {
+        int execute(PersonApiClient client, long key) throws IOException;
+    }
+}
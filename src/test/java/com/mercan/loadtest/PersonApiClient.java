@@ -0,0 +1,167 @@
+package com.mercan.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercan.person.entity.Address;
+import com.mercan.person.entity.Person;
+import com.mercan.person.util.Cursors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Blocking HTTP client for the person API, driven by {@link Operation}s.
+ * Reads go to the seeded people; updates and deletes only touch people and addresses the load test created itself,
+ * falling back to a create while there is nothing of its own to modify.
+ */
+public class PersonApiClient {
+
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    private final String baseUrl;
+    private final ObjectMapper objectMapper;
+    private final List<Long> seededIds;
+    private final ConcurrentLinkedQueue<Long> createdPersonIds = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<long[]> createdAddresses = new ConcurrentLinkedQueue<>();
+
+    public PersonApiClient(String baseUrl, ObjectMapper objectMapper, List<Long> seededIds) {
+        this.baseUrl = baseUrl;
+        this.objectMapper = objectMapper;
+        this.seededIds = seededIds;
+    }
+
+    public int getPerson(long key) throws IOException {
+        return send("GET", "/api/person/" + seededId(key), null).status;
+    }
+
+    public int getPeople(long key) throws IOException {
+        return send("GET", "/api/person?limit=100&after=" + Cursors.encode(seededId(key)), null).status;
+    }
+
+    public int getAddress(long key) throws IOException {
+        return send("GET", "/api/person/" + seededId(key) + "/address", null).status;
+    }
+
+    public int count(long key) throws IOException {
+        return send("GET", "/api/report/person/count", null).status;
+    }
+
+    public int createPerson(long key) throws IOException {
+        Person person = Person.builder().firstName("load-first-" + key).lastName("load-last-" + key)
+                .address(Collections.singleton(address(key))).build();
+        Response response = send("POST", "/api/person", person);
+        if (response.status == HttpURLConnection.HTTP_CREATED) {
+            createdPersonIds.offer(objectMapper.readTree(response.body).get("id").asLong());
+        }
+        return response.status;
+    }
+
+    public int updatePerson(long key) throws IOException {
+        Long personId = createdPersonIds.poll();
+        if (personId == null) {
+            return createPerson(key);
+        }
+        try {
+            Person person = Person.builder().firstName("load-updated-" + key).lastName("load-last-" + key).build();
+            return send("PUT", "/api/person/" + personId, person).status;
+        } finally {
+            createdPersonIds.offer(personId);
+        }
+    }
+
+    public int deletePerson(long key) throws IOException {
+        Long personId = createdPersonIds.poll();
+        if (personId == null) {
+            return createPerson(key);
+        }
+        return send("DELETE", "/api/person/" + personId, null).status;
+    }
+
+    public int createAddress(long key) throws IOException {
+        long personId = seededId(key);
+        Response response = send("POST", "/api/person/" + personId + "/address", address(key));
+        if (response.status == HttpURLConnection.HTTP_CREATED) {
+            JsonNode created = objectMapper.readTree(response.body);
+            createdAddresses.offer(new long[]{personId, created.get("id").asLong()});
+        }
+        return response.status;
+    }
+
+    public int updateAddress(long key) throws IOException {
+        long[] address = createdAddresses.poll();
+        if (address == null) {
+            return createAddress(key);
+        }
+        try {
+            return send("PUT", "/api/person/" + address[0] + "/address/" + address[1], address(key)).status;
+        } finally {
+            createdAddresses.offer(address);
+        }
+    }
+
+    public int deleteAddress(long key) throws IOException {
+        long[] address = createdAddresses.poll();
+        if (address == null) {
+            return createAddress(key);
+        }
+        return send("DELETE", "/api/person/" + address[0] + "/address/" + address[1], null).status;
+    }
+
+    private Long seededId(long key) {
+        return seededIds.get((int) Math.floorMod(key, (long) seededIds.size()));
+    }
+
+    private static Address address(long key) {
+        long n = Math.floorMod(key, 1000000L);
+        return Address.builder().street("load-street-" + n).city("load-city-" + n % 100)
+                .state("load-state-" + n % 50).postalCode("postal-" + n).build();
+    }
+
+    private Response send(String method, String path, Object body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                objectMapper.writeValue(out, body);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream() : connection.getInputStream();
+        // drain the body fully so the connection goes back to the keep-alive cache
+        return new Response(status, in == null ? new byte[0] : readFully(in));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static class Response {
+        private final int status;
+        private final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.mercan.loadtest;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps the application's data source so every statement execution first sleeps for a fixed time, standing in for
+ * a database across a network or under load. The in-memory database otherwise answers in microseconds, which hides
+ * how the server behaves while requests wait on JDBC.
+ * <p>
+ * The R2DBC connection factory of the reactive stack gets the same delay, but as a timer rather than a sleep, since
+ * a non-blocking driver waits for a remote database without holding a thread.
+ */
+public class SlowDataSource implements BeanPostProcessor {
+
+    private final long latencyNanos;
+
+    public SlowDataSource(long latencyMillis) {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource) {
+            return proxy(DataSource.class, bean);
+        }
+        if (bean instanceof ConnectionFactory) {
+            return proxy(ConnectionFactory.class, bean);
+        }
+        return bean;
+    }
+
+    private <T> T proxy(Class<T> type, Object target) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (target instanceof io.r2dbc.spi.Statement && method.getName().equals("execute")) {
+                return Mono.delay(Duration.ofNanos(latencyNanos)).thenMany(Flux.defer(() -> {
+                    try {
+                        return (Publisher<?>) invoke(target, method, args);
+                    } catch (Throwable e) {
+                        return Flux.error(e);
+                    }
+                }));
+            }
+            if (target instanceof Statement && method.getName().startsWith("execute")) {
+                TimeUnit.NANOSECONDS.sleep(latencyNanos);
+            }
+            Object result = invoke(target, method, args);
+            if (result instanceof Connection && method.getReturnType() == Connection.class) {
+                return proxy(Connection.class, result);
+            }
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return proxy(method.getReturnType(), result);
+            }
+            if (target instanceof ConnectionFactory && method.getName().equals("create")) {
+                return Mono.from((Publisher<?>) result).map(connection -> proxy(io.r2dbc.spi.Connection.class, connection));
+            }
+            if (result instanceof io.r2dbc.spi.Statement && method.getName().equals("createStatement")) {
+                return proxy(io.r2dbc.spi.Statement.class, result);
+            }
+            return result;
+        };
+        return type.cast(Proxy.newProxyInstance(SlowDataSource.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
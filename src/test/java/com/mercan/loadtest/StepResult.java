@@ -0,0 +1,36 @@
+package com.mercan.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies, in microseconds, and error counts of one fixed-rate step.
+ */
+@Data
+@AllArgsConstructor
+public class StepResult {
+
+    private int targetRate;
+    private long requests;
+    private long elapsedNanos;
+    private Map<Operation, Histogram> histograms;
+    private Map<Operation, Long> errors;
+
+    public Histogram total() {
+        Histogram total = new Histogram(histograms.values().iterator().next().getHighestTrackableValue(), 3);
+        histograms.values().forEach(total::add);
+        return total;
+    }
+
+    public long totalErrors() {
+        return errors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public double throughput() {
+        return requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -18,10 +19,12 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.util.Arrays;
 
 import static com.mercan.helper.TestHelper.asJsonString;
+import static com.mercan.person.constants.PersonServiceConstants.MERGE_PATCH_JSON_VALUE;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -129,6 +132,25 @@ class AddressControllerTest {
 
     }
 
+    @Test
+    public void replace_addresses_expect_success() throws Exception {
+        Long validPersonId = 1L;
+        Address requestedAddress = Address.builder().city(TEST_CITY).postalCode(TEST_POSTAL_CODE).state(TEST_STATE).street(TEST_STREET).build();
+
+        when(personService.replaceAddresses(eq(validPersonId), any(), eq(3L))).thenReturn(Arrays.asList(expectedAddress));
+        this.mockMvc
+                .perform(put(String.format(ADDRESS_ENDPOINT, validPersonId) + "/address")
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .content(asJsonString(objectMapper, Arrays.asList(requestedAddress)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("[0].street", is(TEST_STREET)));
+        verify(personService, times(1)).replaceAddresses(eq(validPersonId), any(), eq(3L));
+    }
+
     @Test
     public void save_address_expect_validation_error_for_state() throws Exception {
         Long validPersonId = 1L;
@@ -209,7 +231,7 @@ class AddressControllerTest {
         Long validAddressId = 2L;
         Address requestedAddress = Address.builder().city(TEST_CITY).postalCode(TEST_POSTAL_CODE).state(TEST_STATE).street(TEST_STREET).build();
 
-        when(addressService.updateAddress(eq(validPersonId), eq(validAddressId), any())).thenReturn(expectedAddress);
+        when(addressService.updateAddress(eq(validPersonId), eq(validAddressId), any(), any())).thenReturn(expectedAddress);
         this.mockMvc
                 .perform(put(String.format(ADDRESS_ENDPOINT, validPersonId) + "/address/" + validAddressId)
                         .content(asJsonString(objectMapper, requestedAddress))
@@ -221,7 +243,7 @@ class AddressControllerTest {
                 .andExpect(jsonPath("$.city", is(TEST_CITY)))
                 .andExpect(jsonPath("$.postalCode", is(TEST_POSTAL_CODE)))
                 .andExpect(jsonPath("$.street", is(TEST_STREET)));
-        verify(addressService, times(1)).updateAddress(eq(validPersonId), eq(validAddressId), any());
+        verify(addressService, times(1)).updateAddress(eq(validPersonId), eq(validAddressId), any(), any());
 
     }
 
@@ -232,7 +254,7 @@ class AddressControllerTest {
         Long validAddressId = 2L;
         Address requestedAddress = Address.builder().city(TEST_CITY).postalCode(TEST_POSTAL_CODE).state(TEST_STATE).street(TEST_STREET).build();
 
-        when(addressService.updateAddress(eq(invalidPersonId), eq(validAddressId), any())).thenThrow(new ObjectNotFound("person", invalidPersonId));
+        when(addressService.updateAddress(eq(invalidPersonId), eq(validAddressId), any(), any())).thenThrow(new ObjectNotFound("person", invalidPersonId));
         this.mockMvc
                 .perform(put(String.format(ADDRESS_ENDPOINT, invalidPersonId) + "/address/" + validAddressId)
                         .content(asJsonString(objectMapper, requestedAddress))
@@ -242,7 +264,7 @@ class AddressControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.reasonCode", is(HttpStatus.NOT_FOUND.name())))
                 .andExpect(jsonPath("$.errors[0]", is("Resource person with id " + invalidPersonId + " does not exist")));
-        verify(addressService, times(1)).updateAddress(eq(invalidPersonId), eq(validAddressId), any());
+        verify(addressService, times(1)).updateAddress(eq(invalidPersonId), eq(validAddressId), any(), any());
 
     }
 
@@ -254,7 +276,7 @@ class AddressControllerTest {
         Long invalidAddressId = 2L;
         Address requestedAddress = Address.builder().city(TEST_CITY).postalCode(TEST_POSTAL_CODE).state(TEST_STATE).street(TEST_STREET).build();
 
-        when(addressService.updateAddress(eq(validPersonId), eq(invalidAddressId), any())).thenThrow(new ObjectNotFound("address", invalidAddressId));
+        when(addressService.updateAddress(eq(validPersonId), eq(invalidAddressId), any(), any())).thenThrow(new ObjectNotFound("address", invalidAddressId));
         this.mockMvc
                 .perform(put(String.format(ADDRESS_ENDPOINT, validPersonId) + "/address/" + invalidAddressId)
                         .content(asJsonString(objectMapper, requestedAddress))
@@ -264,7 +286,7 @@ class AddressControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.reasonCode", is(HttpStatus.NOT_FOUND.name())))
                 .andExpect(jsonPath("$.errors[0]", is("Resource address with id " + invalidAddressId + " does not exist")));
-        verify(addressService, times(1)).updateAddress(eq(validPersonId), eq(invalidAddressId), any());
+        verify(addressService, times(1)).updateAddress(eq(validPersonId), eq(invalidAddressId), any(), any());
 
     }
 
@@ -388,4 +410,51 @@ class AddressControllerTest {
         verify(addressService, times(1)).deleteAddress(invalidAddressId, validPersonId);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void get_all_address_with_matching_etag_expect_not_modified() throws Exception {
+        Long validPersonId = 1L;
+        when(personService.getPersonVersion(validPersonId)).thenReturn(7L);
+        this.mockMvc
+                .perform(get(String.format(ADDRESS_ENDPOINT, validPersonId) + "/address")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"7\"")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"7\""));
+        verify(addressService, times(0)).getAddress(validPersonId);
+    }
+
+    @Test
+    public void update_address_with_if_match_expect_person_version_passed() throws Exception {
+        Long validPersonId = 1L;
+        Long validAddressId = 2L;
+        when(addressService.updateAddress(eq(validPersonId), eq(validAddressId), any(), eq(5L))).thenReturn(expectedAddress);
+        this.mockMvc
+                .perform(put(String.format(ADDRESS_ENDPOINT, validPersonId) + "/address/" + validAddressId)
+                        .header(HttpHeaders.IF_MATCH, "\"5\"")
+                        .content(asJsonString(objectMapper, expectedAddress))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk());
+        verify(addressService, times(1)).updateAddress(eq(validPersonId), eq(validAddressId), any(), eq(5L));
+    }
+
+    @Test
+    public void patch_address_with_merge_patch_expect_success() throws Exception {
+        Long validPersonId = 1L;
+        Long validAddressId = 2L;
+        when(addressService.patchAddress(eq(validPersonId), eq(validAddressId), any(), eq(4L))).thenReturn(expectedAddress);
+        this.mockMvc
+                .perform(patch(String.format(ADDRESS_ENDPOINT, validPersonId) + "/address/" + validAddressId)
+                        .header(HttpHeaders.IF_MATCH, "\"4\"")
+                        .content("{\"city\":\"" + TEST_CITY + "\"}")
+                        .contentType(MERGE_PATCH_JSON_VALUE)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.city", is(TEST_CITY)));
+        verify(addressService, times(1)).patchAddress(eq(validPersonId), eq(validAddressId), argThat(patch -> patch.has("city")), eq(4L));
+    }
+}
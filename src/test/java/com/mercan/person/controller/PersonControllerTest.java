@@ -2,7 +2,16 @@ package com.mercan.person.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mercan.person.entity.Person;
+import com.mercan.person.exception.InvalidRequest;
 import com.mercan.person.exception.ObjectNotFound;
+import com.mercan.person.exception.PreconditionFailed;
+import com.mercan.person.pojo.BulkCreateResult;
+import com.mercan.person.pojo.CursorPage;
+import com.mercan.person.pojo.NameMatch;
+import com.mercan.person.pojo.NameMatchMode;
+import com.mercan.person.pojo.PersonLookup;
+import com.mercan.person.pojo.PersonSearch;
+import com.mercan.person.pojo.PersonSort;
 import com.mercan.person.service.PersonService;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -10,19 +19,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
 
 import static com.mercan.helper.TestHelper.asJsonString;
 import static com.mercan.helper.TestHelper.createTestPerson;
+import static com.mercan.person.constants.PersonServiceConstants.MERGE_PATCH_JSON_VALUE;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(PersonController.class)
@@ -51,19 +70,157 @@ class PersonControllerTest {
 
     @Test
     public void get_all_persons_expect_success() throws Exception {
-        when(personService.getPeople()).thenReturn(Arrays.asList(storedPerson));
+        when(personService.getPeople(null, null)).thenReturn(CursorPage.<Person>builder().items(Arrays.asList(storedPerson)).build());
         this.mockMvc
                 .perform(get(PERSON_ENDPOINT)
                         .accept(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
                 .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("[0].firstName", is(TEST_FIRSTNAME)))
                 .andExpect(jsonPath("[0].lastName", is(TEST_LASTNAME)));
-        verify(personService, times(1)).getPeople();
+        verify(personService, times(1)).getPeople(null, null);
 
     }
 
+    @Test
+    public void get_persons_page_expect_next_cursor_header() throws Exception {
+        when(personService.getPeople("MQ", 1)).thenReturn(CursorPage.<Person>builder().items(Arrays.asList(storedPerson)).nextCursor("Mg").build());
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT)
+                        .param("after", "MQ")
+                        .param("limit", "1")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "Mg"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("[0].firstName", is(TEST_FIRSTNAME)));
+        verify(personService, times(1)).getPeople("MQ", 1);
+    }
+
+    @Test
+    public void search_persons_expect_criteria_passed_and_next_cursor_header() throws Exception {
+        PersonSearch search = PersonSearch.builder().lastName("test").city("city").sort(PersonSort.LAST_NAME).direction(Sort.Direction.DESC).build();
+        when(personService.searchPeople(search, null, 1)).thenReturn(CursorPage.<Person>builder().items(Arrays.asList(storedPerson)).nextCursor("MTp0ZXN0").build());
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/search")
+                        .param("lastName", "test")
+                        .param("city", "city")
+                        .param("sort", "lastName")
+                        .param("direction", "desc")
+                        .param("limit", "1")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "MTp0ZXN0"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("[0].lastName", is(TEST_LASTNAME)));
+        verify(personService, times(1)).searchPeople(search, null, 1);
+    }
+
+    @Test
+    public void search_persons_expect_bad_request_for_unknown_sort() throws Exception {
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/search")
+                        .param("sort", "city")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0]", is("sort: must be one of id, lastName, firstName")));
+        verify(personService, times(0)).searchPeople(any(), any(), any());
+    }
+
+    @Test
+    public void lookup_people_expect_found_and_missing() throws Exception {
+        PersonLookup lookup = PersonLookup.builder()
+                .people(Arrays.asList(new Person(2L, TEST_FIRSTNAME, TEST_LASTNAME, null)))
+                .missing(Arrays.asList(7L))
+                .build();
+        when(personService.lookupPeople(Arrays.asList(2L, 7L))).thenReturn(lookup);
+        this.mockMvc
+                .perform(post(PERSON_ENDPOINT + "/lookup")
+                        .content("[2, 7]")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.people", hasSize(1)))
+                .andExpect(jsonPath("$.people[0].id", is(2)))
+                .andExpect(jsonPath("$.missing[0]", is(7)));
+        verify(personService, times(1)).lookupPeople(Arrays.asList(2L, 7L));
+    }
+
+    @Test
+    public void search_names_expect_ranked_matches() throws Exception {
+        NameMatch match = NameMatch.builder().id(1L).firstName(TEST_FIRSTNAME).lastName(TEST_LASTNAME).score(0.5).build();
+        when(personService.searchNames("jon smyth", NameMatchMode.PHONETIC, 5)).thenReturn(Arrays.asList(match));
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/search/names")
+                        .param("q", "jon smyth")
+                        .param("match", "phonetic")
+                        .param("limit", "5")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("[0].id", is(1)))
+                .andExpect(jsonPath("[0].score", is(0.5)));
+        verify(personService, times(1)).searchNames("jon smyth", NameMatchMode.PHONETIC, 5);
+    }
+
+    @Test
+    public void search_names_expect_bad_request_for_unknown_match() throws Exception {
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/search/names")
+                        .param("q", "jon")
+                        .param("match", "exact")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0]", is("match: must be trigram or phonetic")));
+    }
+
+    @Test
+    public void get_persons_page_expect_bad_request_for_invalid_cursor() throws Exception {
+        when(personService.getPeople("invalid", null)).thenThrow(new InvalidRequest(Collections.singletonList("after: is not a valid cursor")));
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT)
+                        .param("after", "invalid")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.reasonCode", is(HttpStatus.BAD_REQUEST.name())))
+                .andExpect(jsonPath("$.errors[0]", is("after: is not a valid cursor")));
+    }
+
+    @Test
+    public void export_persons_expect_ndjson_stream() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Person> consumer = invocation.getArgument(1);
+            consumer.accept(storedPerson);
+            consumer.accept(storedPerson);
+            return null;
+        }).when(personService).exportPeople(eq(5L), any());
+
+        MvcResult result = this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/export")
+                        .param("afterId", "5")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                )
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String line = asJsonString(objectMapper, storedPerson);
+        this.mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(line + "\n" + line + "\n"));
+        verify(personService, times(1)).exportPeople(eq(5L), any());
+    }
+
     @Test
     public void get_all_person_by_id_expect_success() throws Exception {
         long validPersonId = 1L;
@@ -78,6 +235,35 @@ class PersonControllerTest {
         verify(personService, times(1)).getPerson(validPersonId);
     }
 
+    @Test
+    public void get_person_by_id_expect_etag_from_version() throws Exception {
+        long validPersonId = 1L;
+        when(personService.getPersonVersion(validPersonId)).thenReturn(3L);
+        when(personService.getPerson(validPersonId)).thenReturn(storedPerson);
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/" + validPersonId)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    public void get_person_by_id_with_matching_etag_expect_not_modified() throws Exception {
+        long validPersonId = 1L;
+        when(personService.getPersonVersion(validPersonId)).thenReturn(3L);
+        this.mockMvc
+                .perform(get(PERSON_ENDPOINT + "/" + validPersonId)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(content().string(""));
+        verify(personService, times(0)).getPerson(validPersonId);
+    }
+
     @Test
     public void get_all_person_by_id_expect_exception() throws Exception {
         long invalidPersonId = 1L;
@@ -147,12 +333,45 @@ class PersonControllerTest {
     }
 
 
+    @Test
+    public void bulk_save_persons_expect_success() throws Exception {
+        BulkCreateResult result = BulkCreateResult.builder().created(2).ids(Arrays.asList(1L, 2L)).build();
+
+        when(personService.createPeople(any())).thenReturn(result);
+        this.mockMvc
+                .perform(post(PERSON_ENDPOINT + "/bulk")
+                        .content(asJsonString(objectMapper, Arrays.asList(storedPerson, storedPerson)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created", is(2)))
+                .andExpect(jsonPath("$.ids", hasSize(2)));
+        verify(personService, times(1)).createPeople(any());
+    }
+
+    @Test
+    public void bulk_save_persons_expect_item_errors() throws Exception {
+        when(personService.createPeople(any())).thenThrow(new InvalidRequest(Arrays.asList("[0].firstName: is mandatory", "[1].lastName: is mandatory")));
+        this.mockMvc
+                .perform(post(PERSON_ENDPOINT + "/bulk")
+                        .content(asJsonString(objectMapper, Arrays.asList(storedPerson, storedPerson)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.reasonCode", is(HttpStatus.BAD_REQUEST.name())))
+                .andExpect(jsonPath("$.errors[0]", is("[0].firstName: is mandatory")))
+                .andExpect(jsonPath("$.errors[1]", is("[1].lastName: is mandatory")));
+    }
+
+
     @Test
     public void update_person_expect_success() throws Exception {
         Person updatedPerson = Person.builder().lastName(TEST_LASTNAME).firstName(TEST_FIRSTNAME).build();
         long validPersonId = 1L;
 
-        when(personService.updatePerson(eq(validPersonId), any())).thenReturn(updatedPerson);
+        when(personService.updatePerson(eq(validPersonId), any(), any())).thenReturn(updatedPerson);
         this.mockMvc
                 .perform(put(PERSON_ENDPOINT + "/" + validPersonId)
                         .content(asJsonString(objectMapper, updatedPerson))
@@ -163,7 +382,7 @@ class PersonControllerTest {
                 .andExpect(jsonPath("$.firstName", is(TEST_FIRSTNAME)))
                 .andExpect(jsonPath("$.lastName", is(TEST_LASTNAME)));
 
-        verify(personService, times(1)).updatePerson(eq(validPersonId), any());
+        verify(personService, times(1)).updatePerson(eq(validPersonId), any(), any());
 
     }
 
@@ -173,7 +392,7 @@ class PersonControllerTest {
         Person updatedPerson = Person.builder().lastName(TEST_LASTNAME).build();
         long validPersonId = 1L;
 
-        when(personService.updatePerson(eq(validPersonId), any())).thenReturn(updatedPerson);
+        when(personService.updatePerson(eq(validPersonId), any(), any())).thenReturn(updatedPerson);
         this.mockMvc
                 .perform(put(PERSON_ENDPOINT + "/" + validPersonId)
                         .content(asJsonString(objectMapper, updatedPerson))
@@ -190,7 +409,7 @@ class PersonControllerTest {
         Person updatedPerson = Person.builder().firstName(TEST_FIRSTNAME).build();
         long validPersonId = 1L;
 
-        when(personService.updatePerson(eq(validPersonId), any())).thenReturn(updatedPerson);
+        when(personService.updatePerson(eq(validPersonId), any(), any())).thenReturn(updatedPerson);
         this.mockMvc
                 .perform(put(PERSON_ENDPOINT + "/" + validPersonId)
                         .content(asJsonString(objectMapper, updatedPerson))
@@ -208,7 +427,7 @@ class PersonControllerTest {
         Person updatedPerson = Person.builder().firstName(TEST_FIRSTNAME).lastName(TEST_LASTNAME).build();
         long invalidPersonId = 1L;
 
-        when(personService.updatePerson(eq(invalidPersonId), any())).thenThrow(new ObjectNotFound("person", invalidPersonId));
+        when(personService.updatePerson(eq(invalidPersonId), any(), any())).thenThrow(new ObjectNotFound("person", invalidPersonId));
         this.mockMvc
                 .perform(put(PERSON_ENDPOINT + "/" + invalidPersonId)
                         .content(asJsonString(objectMapper, updatedPerson))
@@ -218,10 +437,129 @@ class PersonControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.reasonCode", is(HttpStatus.NOT_FOUND.name())))
                 .andExpect(jsonPath("$.errors[0]", is("Resource person with id " + invalidPersonId + " does not exist")));
-        verify(personService, times(1)).updatePerson(eq(invalidPersonId), any());
+        verify(personService, times(1)).updatePerson(eq(invalidPersonId), any(), any());
+
+    }
+
+
+    @Test
+    public void update_person_with_if_match_expect_version_passed_and_new_etag() throws Exception {
+        Person updatedPerson = new Person(1L, TEST_FIRSTNAME, TEST_LASTNAME, null, 4L);
+        long validPersonId = 1L;
+
+        when(personService.updatePerson(eq(validPersonId), any(), eq(3L))).thenReturn(updatedPerson);
+        this.mockMvc
+                .perform(put(PERSON_ENDPOINT + "/" + validPersonId)
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .content(asJsonString(objectMapper, updatedPerson))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    public void update_person_with_stale_if_match_expect_precondition_failed() throws Exception {
+        Person updatedPerson = Person.builder().firstName(TEST_FIRSTNAME).lastName(TEST_LASTNAME).build();
+        long validPersonId = 1L;
+
+        when(personService.updatePerson(eq(validPersonId), any(), eq(3L))).thenThrow(new PreconditionFailed("person", validPersonId, 3L));
+        this.mockMvc
+                .perform(put(PERSON_ENDPOINT + "/" + validPersonId)
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .content(asJsonString(objectMapper, updatedPerson))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.reasonCode", is(HttpStatus.PRECONDITION_FAILED.name())))
+                .andExpect(jsonPath("$.errors[0]", is("Resource person with id 1 is not at version 3")));
+    }
+
+    @Test
+    public void update_person_with_concurrent_writer_expect_conflict() throws Exception {
+        Person updatedPerson = Person.builder().firstName(TEST_FIRSTNAME).lastName(TEST_LASTNAME).build();
+        long validPersonId = 1L;
+
+        when(personService.updatePerson(eq(validPersonId), any(), any())).thenThrow(new ObjectOptimisticLockingFailureException(Person.class, validPersonId));
+        this.mockMvc
+                .perform(put(PERSON_ENDPOINT + "/" + validPersonId)
+                        .content(asJsonString(objectMapper, updatedPerson))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.reasonCode", is(HttpStatus.CONFLICT.name())));
+    }
+
+    @Test
+    public void update_person_with_weak_if_match_expect_precondition_failed() throws Exception {
+        Person updatedPerson = Person.builder().firstName(TEST_FIRSTNAME).lastName(TEST_LASTNAME).build();
+        long validPersonId = 1L;
 
+        this.mockMvc
+                .perform(put(PERSON_ENDPOINT + "/" + validPersonId)
+                        .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                        .content(asJsonString(objectMapper, updatedPerson))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.reasonCode", is(HttpStatus.PRECONDITION_FAILED.name())))
+                .andExpect(jsonPath("$.errors[0]", is("If-Match: weak entity tags never match")));
+        verify(personService, times(0)).updatePerson(any(), any(), any());
     }
 
+    @Test
+    public void update_person_with_malformed_if_match_expect_validation_error() throws Exception {
+        Person updatedPerson = Person.builder().firstName(TEST_FIRSTNAME).lastName(TEST_LASTNAME).build();
+        long validPersonId = 1L;
+
+        this.mockMvc
+                .perform(put(PERSON_ENDPOINT + "/" + validPersonId)
+                        .header(HttpHeaders.IF_MATCH, "\"3\", \"4\"")
+                        .content(asJsonString(objectMapper, updatedPerson))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0]", is("If-Match: must be a single entity tag")));
+        verify(personService, times(0)).updatePerson(any(), any(), any());
+    }
+
+    @Test
+    public void patch_person_with_merge_patch_expect_success() throws Exception {
+        Person patchedPerson = new Person(1L, "patched-first-name", TEST_LASTNAME, null, 2L);
+        long validPersonId = 1L;
+
+        when(personService.patchPerson(eq(validPersonId), any(), eq(null))).thenReturn(patchedPerson);
+        this.mockMvc
+                .perform(patch(PERSON_ENDPOINT + "/" + validPersonId)
+                        .content("{\"firstName\":\"patched-first-name\"}")
+                        .contentType(MERGE_PATCH_JSON_VALUE)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(jsonPath("$.firstName", is("patched-first-name")))
+                .andExpect(jsonPath("$.lastName", is(TEST_LASTNAME)));
+        verify(personService, times(1)).patchPerson(eq(validPersonId), argThat(patch -> patch.size() == 1 && patch.has("firstName")), eq(null));
+    }
+
+    @Test
+    public void patch_person_expect_exception() throws Exception {
+        long invalidPersonId = 1L;
+
+        when(personService.patchPerson(eq(invalidPersonId), any(), any())).thenThrow(new ObjectNotFound("person", invalidPersonId));
+        this.mockMvc
+                .perform(patch(PERSON_ENDPOINT + "/" + invalidPersonId)
+                        .content("{\"firstName\":\"patched-first-name\"}")
+                        .contentType(MERGE_PATCH_JSON_VALUE)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotFound());
+    }
 
     @Test
     public void delete_person_expect_success() throws Exception {
@@ -0,0 +1,109 @@
+package com.mercan.person.controller;
+
+import com.mercan.person.pojo.AddressCountBucket;
+import com.mercan.person.pojo.LocationCount;
+import com.mercan.person.service.PersonService;
+import com.mercan.person.service.ReportAggregates;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ReportingController.class)
+@AutoConfigureMockMvc
+class ReportingControllerTest {
+    private static final String PERSON_COUNT_ENDPOINT = "/api/report/person/count";
+
+    @MockBean
+    PersonService personService;
+
+    @MockBean
+    ReportAggregates reportAggregates;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void count_person_expect_tracked_count() throws Exception {
+        when(personService.getPersonCount(false)).thenReturn(5L);
+        this.mockMvc
+                .perform(get(PERSON_COUNT_ENDPOINT)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().string("5"));
+        verify(personService, times(1)).getPersonCount(false);
+    }
+
+    @Test
+    public void count_person_exact_expect_recount() throws Exception {
+        when(personService.getPersonCount(true)).thenReturn(6L);
+        this.mockMvc
+                .perform(get(PERSON_COUNT_ENDPOINT)
+                        .param("exact", "true")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().string("6"));
+        verify(personService, times(1)).getPersonCount(true);
+    }
+
+    @Test
+    public void people_by_state_expect_tracked_counts() throws Exception {
+        when(reportAggregates.getPeopleByState(false)).thenReturn(Arrays.asList(
+                LocationCount.builder().state("CA").people(3).build(),
+                LocationCount.builder().state("NY").people(1).build()));
+        this.mockMvc
+                .perform(get("/api/report/person/state")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].state", is("CA")))
+                .andExpect(jsonPath("$[0].people", is(3)))
+                .andExpect(jsonPath("$[0].city").doesNotExist())
+                .andExpect(jsonPath("$[1].state", is("NY")));
+    }
+
+    @Test
+    public void people_by_city_for_state_exact_expect_state_and_exact_passed() throws Exception {
+        when(reportAggregates.getPeopleByCity("CA", true)).thenReturn(Collections.singletonList(
+                LocationCount.builder().state("CA").city("Irvine").people(2).build()));
+        this.mockMvc
+                .perform(get("/api/report/person/city")
+                        .param("state", "CA")
+                        .param("exact", "true")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].city", is("Irvine")))
+                .andExpect(jsonPath("$[0].people", is(2)));
+        verify(reportAggregates, times(1)).getPeopleByCity("CA", true);
+    }
+
+    @Test
+    public void address_distribution_expect_buckets() throws Exception {
+        when(reportAggregates.getAddressDistribution(false)).thenReturn(Arrays.asList(
+                AddressCountBucket.builder().addresses(0).people(4).build(),
+                AddressCountBucket.builder().addresses(2).people(1).build()));
+        this.mockMvc
+                .perform(get("/api/report/address/distribution")
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1].addresses", is(2)))
+                .andExpect(jsonPath("$[1].people", is(1)));
+    }
+}
@@ -0,0 +1,121 @@
+package com.mercan.person.search;
+
+import com.mercan.person.pojo.NameMatch;
+import com.mercan.person.pojo.NameMatchMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+
+class NameIndexTest {
+
+    private NameIndex nameIndex;
+
+    @BeforeEach
+    public void setup() {
+        nameIndex = new NameIndex();
+        nameIndex.put(1L, "Catherine", "Zeta");
+        nameIndex.put(2L, "John", "Smith");
+        nameIndex.put(3L, "Jon", "Smythe");
+        nameIndex.put(4L, "Maria", "Garcia");
+        nameIndex.put(5L, "Mario", "Garcia");
+    }
+
+    @Test
+    public void tokens_expect_accents_dropped_and_apostrophes_joined() {
+        assertThat(NameIndex.tokens("O'Brien-Núñez  JR."), contains("obrien", "nunez", "jr"));
+    }
+
+    @Test
+    public void search_trigram_with_typo_expect_match() {
+
+        //when
+        List<NameMatch> matches = nameIndex.search("Catherin Zetta", NameMatchMode.TRIGRAM, 10);
+
+        //then
+        assertThat(ids(matches), contains(1L));
+        assertThat(matches.get(0).getFirstName(), is("Catherine"));
+        assertThat(matches.get(0).getScore(), greaterThanOrEqualTo(NameIndex.MIN_SIMILARITY));
+    }
+
+    @Test
+    public void search_trigram_expect_closest_first_and_limit_applied() {
+        assertThat(ids(nameIndex.search("maria garcia", NameMatchMode.TRIGRAM, 10)), contains(4L, 5L));
+        assertThat(ids(nameIndex.search("maria garcia", NameMatchMode.TRIGRAM, 1)), contains(4L));
+    }
+
+    @Test
+    public void search_trigram_for_unrelated_name_expect_no_match() {
+        assertThat(nameIndex.search("Xavier Quentin", NameMatchMode.TRIGRAM, 10), is(empty()));
+        assertThat(nameIndex.search("--", NameMatchMode.TRIGRAM, 10), is(empty()));
+    }
+
+    @Test
+    public void search_phonetic_expect_sound_alikes_for_every_token() {
+        assertThat(ids(nameIndex.search("Jon Smith", NameMatchMode.PHONETIC, 10)), contains(2L, 3L));
+        assertThat(ids(nameIndex.search("Kathryn", NameMatchMode.PHONETIC, 10)), contains(1L));
+        assertThat(nameIndex.search("Jon Garcia", NameMatchMode.PHONETIC, 10), is(empty()));
+    }
+
+    @Test
+    public void put_for_indexed_id_expect_name_replaced() {
+
+        //when
+        nameIndex.put(2L, "Johnny", "Walker");
+
+        //then
+        assertThat(ids(nameIndex.search("John Smith", NameMatchMode.TRIGRAM, 10)), not(hasItem(2L)));
+        assertThat(ids(nameIndex.search("Johnny Walker", NameMatchMode.TRIGRAM, 10)), contains(2L));
+        assertThat(nameIndex.size(), is(5));
+    }
+
+    @Test
+    public void put_if_absent_for_indexed_id_expect_name_kept() {
+        assertThat(nameIndex.putIfAbsent(2L, "Johnny", "Walker"), is(false));
+        assertThat(ids(nameIndex.search("John Smith", NameMatchMode.TRIGRAM, 1)), contains(2L));
+    }
+
+    @Test
+    public void remove_expect_name_no_longer_found() {
+
+        //when
+        nameIndex.remove(1L);
+
+        //then
+        assertThat(nameIndex.search("Catherine Zeta", NameMatchMode.TRIGRAM, 10), is(empty()));
+        assertThat(nameIndex.search("Catherine Zeta", NameMatchMode.PHONETIC, 10), is(empty()));
+        assertThat(nameIndex.size(), is(4));
+    }
+
+    @Test
+    public void many_removals_expect_compacted_index_still_answers() {
+
+        //given
+        for (long id = 100; id < 5000; id++) {
+            nameIndex.put(id, "Temporary" + id, "Person");
+        }
+
+        //when
+        for (long id = 100; id < 5000; id++) {
+            nameIndex.remove(id);
+        }
+        nameIndex.put(6L, "Catharina", "Zeta");
+
+        //then
+        assertThat(nameIndex.size(), is(6));
+        assertThat(ids(nameIndex.search("Catherine Zeta", NameMatchMode.TRIGRAM, 10)), contains(1L, 6L));
+    }
+
+    private static List<Long> ids(List<NameMatch> matches) {
+        return matches.stream().map(NameMatch::getId).collect(Collectors.toList());
+    }
+}
@@ -1,10 +1,15 @@
 package com.mercan.person.service;
 
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.mercan.person.entity.Address;
 import com.mercan.person.entity.Person;
 import com.mercan.person.exception.ObjectNotFound;
+import com.mercan.person.exception.PreconditionFailed;
 import com.mercan.person.repository.AddressRepository;
 import com.mercan.person.repository.PersonRepository;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,7 +18,9 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,7 +29,10 @@ import static com.mercan.helper.TestHelper.createTestPerson;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -46,6 +56,18 @@ class AddressServiceTest {
     @Mock
     AddressRepository addressRepository;
 
+    @Mock
+    MergePatcher mergePatcher;
+
+    @Mock
+    ReportAggregates reportAggregates;
+
+    @Mock
+    EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    Cache secondLevelCache;
+
     @InjectMocks
     AddressService addressService;
 
@@ -54,7 +76,10 @@ class AddressServiceTest {
     public void setup() {
         person = createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME);
         address = createTestAddress(TEST_CITY, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
-
+        // a SessionFactory is an EntityManagerFactory too, so it is not a @Mock the service could be injected with
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        lenient().when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        lenient().when(sessionFactory.getCache()).thenReturn(secondLevelCache);
     }
 
     @Test
@@ -62,17 +87,39 @@ class AddressServiceTest {
 
         //given
         Address requestedAddress = Address.builder().city(TEST_CITY).postalCode(TEST_POSTAL_CODE).state(TEST_STATE).street(TEST_STREET).build();
-        given(personRepository.existsById(TEST_PERSON_ID)).willReturn(true);
-        given(addressRepository.findAllByPersonId(TEST_PERSON_ID)).willReturn(Arrays.asList(requestedAddress));
+        given(addressRepository.findAllByExistingPersonId(TEST_PERSON_ID)).willReturn(Arrays.asList(requestedAddress));
 
         //when
         List<Address> address = addressService.getAddress(TEST_PERSON_ID);
 
         //then
         assertThat(address, is(Arrays.asList(requestedAddress)));
-        verify(personRepository, times(1)).existsById(TEST_PERSON_ID);
-        verify(addressRepository, times(1)).findAllByPersonId(TEST_PERSON_ID);
+        verify(addressRepository, times(1)).findAllByExistingPersonId(TEST_PERSON_ID);
+        verify(personRepository, times(0)).existsById(TEST_PERSON_ID);
+
+    }
+
+    @Test
+    public void get_address_expect_empty_list_when_person_has_no_address() {
+
+        //given
+        given(addressRepository.findAllByExistingPersonId(TEST_PERSON_ID)).willReturn(Collections.singletonList(null));
+
+        //when
+        List<Address> address = addressService.getAddress(TEST_PERSON_ID);
+
+        //then
+        assertThat(address, is(Collections.emptyList()));
+    }
+
+    @Test
+    public void get_address_expect_exception_when_person_does_not_exist() {
+
+        //given
+        given(addressRepository.findAllByExistingPersonId(TEST_PERSON_ID)).willReturn(Collections.emptyList());
 
+        //then
+        Assertions.assertThrows(ObjectNotFound.class, () -> addressService.getAddress(TEST_PERSON_ID));
     }
 
     @Test
@@ -81,7 +128,8 @@ class AddressServiceTest {
         //given
         Address requestedAddress = createTestAddress(TEST_CITY, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
 
-        given(personRepository.findById(TEST_PERSON_ID)).willReturn(Optional.of(person));
+        given(personRepository.incrementVersion(TEST_PERSON_ID)).willReturn(1);
+        given(personRepository.getOne(TEST_PERSON_ID)).willReturn(person);
         given(addressRepository.save(requestedAddress)).willReturn(requestedAddress);
 
         //when
@@ -89,7 +137,8 @@ class AddressServiceTest {
 
         //then
         assertThat(address, is(requestedAddress));
-        verify(personRepository, times(1)).findById(TEST_PERSON_ID);
+        assertThat(requestedAddress.getPerson(), is(person));
+        verify(personRepository, times(0)).findById(TEST_PERSON_ID);
 
 
     }
@@ -98,13 +147,11 @@ class AddressServiceTest {
     public void create_address_expect_exception_when_person_does_not_exist() {
 
         //given
-
-        given(personRepository.findById(TEST_PERSON_ID)).willReturn(Optional.empty());
-
+        given(personRepository.incrementVersion(TEST_PERSON_ID)).willReturn(0);
 
         //then
         Assertions.assertThrows(ObjectNotFound.class, () -> addressService.createAddress(TEST_PERSON_ID, address));
-        verify(personRepository, times(1)).findById(TEST_PERSON_ID);
+        verify(addressRepository, times(0)).save(address);
     }
 
     @Test
@@ -112,71 +159,154 @@ class AddressServiceTest {
 
         //given
         Address requestedAddress = createTestAddress(TEST_CITY, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
-        Address storedAddress = createTestAddress(TEST_CITY, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
 
-        given(personRepository.existsById(TEST_PERSON_ID)).willReturn(true);
-        given(addressRepository.save(any())).willReturn(storedAddress);
-        given(addressRepository.findById(TEST_ADDRESS_ID)).willReturn(Optional.of(storedAddress));
+        given(addressRepository.updateByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID, TEST_STREET, TEST_CITY, TEST_STATE, TEST_POSTAL_CODE)).willReturn(1);
 
         //when
-        Address address = addressService.updateAddress(TEST_PERSON_ID, TEST_ADDRESS_ID, requestedAddress);
+        Address address = addressService.updateAddress(TEST_PERSON_ID, TEST_ADDRESS_ID, requestedAddress, null);
 
         //then
-        assertThat(address, is(storedAddress));
-        verify(personRepository, times(1)).existsById(TEST_PERSON_ID);
+        assertThat(address.getId(), is(TEST_ADDRESS_ID));
+        assertThat(address.getCity(), is(TEST_CITY));
+        verify(addressRepository, times(0)).findById(TEST_ADDRESS_ID);
+        verify(addressRepository, times(0)).save(any());
+        verify(personRepository, times(1)).incrementVersion(TEST_PERSON_ID);
+        // evicted right away and again after commit, which without a transaction is immediate
+        verify(secondLevelCache, times(2)).evictEntityData(Person.class, TEST_PERSON_ID);
+        verify(secondLevelCache, times(2)).evictEntityData(Address.class, TEST_ADDRESS_ID);
+        verify(secondLevelCache, times(2)).evictCollectionData(Person.class.getName() + ".address", TEST_PERSON_ID);
     }
 
     @Test
-    public void update_address_expect_exception_when_person_does_not_exist() {
+    public void update_address_expect_exception_when_address_does_not_exist_for_person() {
 
         //given
         Address requestedAddress = createTestAddress(TEST_CITY, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
 
-        given(personRepository.existsById(TEST_PERSON_ID)).willReturn(false);
+        given(addressRepository.updateByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID, TEST_STREET, TEST_CITY, TEST_STATE, TEST_POSTAL_CODE)).willReturn(0);
 
         //then
-        Assertions.assertThrows(ObjectNotFound.class, () -> addressService.updateAddress(TEST_PERSON_ID, TEST_ADDRESS_ID, requestedAddress));
-        verify(personRepository, times(1)).existsById(TEST_PERSON_ID);
+        Assertions.assertThrows(ObjectNotFound.class, () -> addressService.updateAddress(TEST_PERSON_ID, TEST_ADDRESS_ID, requestedAddress, null));
         verify(addressRepository, times(0)).save(requestedAddress);
+        // the version is bumped first and rolled back with the transaction
+        verify(personRepository, times(1)).incrementVersion(TEST_PERSON_ID);
+        verify(reportAggregates, times(0)).change(any(), any());
     }
 
+
     @Test
-    public void update_address_expect_exception_when_address_does_not_exist() {
+    public void update_address_with_matching_version_expect_single_version_bump() {
 
         //given
         Address requestedAddress = createTestAddress(TEST_CITY, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
 
-        given(personRepository.existsById(TEST_PERSON_ID)).willReturn(true);
-        given(addressRepository.findById(TEST_ADDRESS_ID)).willReturn(Optional.empty());
+        given(personRepository.incrementVersionIfMatches(TEST_PERSON_ID, 3L)).willReturn(1);
+        given(addressRepository.updateByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID, TEST_STREET, TEST_CITY, TEST_STATE, TEST_POSTAL_CODE)).willReturn(1);
+
+        //when
+        Address address = addressService.updateAddress(TEST_PERSON_ID, TEST_ADDRESS_ID, requestedAddress, 3L);
 
         //then
-        Assertions.assertThrows(ObjectNotFound.class, () -> addressService.updateAddress(TEST_PERSON_ID, TEST_ADDRESS_ID, requestedAddress));
-        verify(personRepository, times(1)).existsById(TEST_PERSON_ID);
-        verify(addressRepository, times(0)).save(requestedAddress);
+        assertThat(address.getId(), is(TEST_ADDRESS_ID));
+        verify(personRepository, times(0)).incrementVersion(TEST_PERSON_ID);
     }
 
+    @Test
+    public void update_address_with_stale_version_expect_precondition_failed() {
+
+        //given
+        Address requestedAddress = createTestAddress(TEST_CITY, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
+
+        given(personRepository.incrementVersionIfMatches(TEST_PERSON_ID, 3L)).willReturn(0);
+        given(personRepository.findVersionById(TEST_PERSON_ID)).willReturn(Optional.of(4L));
+
+        //then
+        Assertions.assertThrows(PreconditionFailed.class, () -> addressService.updateAddress(TEST_PERSON_ID, TEST_ADDRESS_ID, requestedAddress, 3L));
+        verify(addressRepository, times(0)).updateByIdAndPersonId(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void update_address_with_version_of_missing_person_expect_not_found() {
+
+        //given
+        Address requestedAddress = createTestAddress(TEST_CITY, TEST_POSTAL_CODE, TEST_STATE, TEST_STREET);
+
+        given(personRepository.incrementVersionIfMatches(TEST_PERSON_ID, 3L)).willReturn(0);
+        given(personRepository.findVersionById(TEST_PERSON_ID)).willReturn(Optional.empty());
+
+        //then
+        Assertions.assertThrows(ObjectNotFound.class, () -> addressService.updateAddress(TEST_PERSON_ID, TEST_ADDRESS_ID, requestedAddress, 3L));
+    }
+
+    @Test
+    public void patch_address_expect_patch_applied_and_person_version_bumped() {
+
+        //given
+        ObjectNode patch = JsonNodeFactory.instance.objectNode().put("city", "patched-city");
+        given(addressRepository.findByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID)).willReturn(Optional.of(address));
+
+        //when
+        Address patched = addressService.patchAddress(TEST_PERSON_ID, TEST_ADDRESS_ID, patch, null);
+
+        //then
+        assertThat(patched, is(address));
+        verify(mergePatcher, times(1)).apply(eq(address), eq(patch), any());
+        verify(personRepository, times(1)).incrementVersion(TEST_PERSON_ID);
+        verify(addressRepository, times(0)).save(any());
+    }
+
+    @Test
+    public void patch_address_expect_exception_when_address_does_not_exist_for_person() {
+
+        //given
+        given(addressRepository.findByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID)).willReturn(Optional.empty());
+
+        //then
+        Assertions.assertThrows(ObjectNotFound.class, () -> addressService.patchAddress(TEST_PERSON_ID, TEST_ADDRESS_ID, JsonNodeFactory.instance.objectNode(), null));
+        // the version is bumped first and rolled back with the transaction
+        verify(personRepository, times(1)).incrementVersion(TEST_PERSON_ID);
+        verify(mergePatcher, times(0)).apply(any(), any(), any());
+    }
 
     @Test
     public void delete_address_expect_success() {
 
         //given
 
-        given(addressRepository.findAllByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID)).willReturn(Optional.of(address));
+        given(addressRepository.deleteByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID)).willReturn(1);
+
+        //when
+        addressService.deleteAddress(TEST_ADDRESS_ID, TEST_PERSON_ID);
+        verify(addressRepository, times(1)).deleteByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID);
+        verify(addressRepository, times(0)).delete(any());
+        verify(personRepository, times(1)).incrementVersion(TEST_PERSON_ID);
+
+    }
+
+    @Test
+    public void delete_address_expect_report_aggregates_changed() {
+
+        //given
+        given(addressRepository.deleteByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID)).willReturn(1);
 
         //when
         addressService.deleteAddress(TEST_ADDRESS_ID, TEST_PERSON_ID);
-        verify(addressRepository, times(1)).findAllByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID);
 
+        //then
+        verify(addressRepository, times(1)).findLocationsByPersonId(TEST_PERSON_ID);
+        verify(reportAggregates, times(1)).change(any(), any());
     }
 
     @Test
     public void delete_address_expect_exception_when_address_does_not_exist() {
 
         //given
-        given(addressRepository.findAllByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID)).willReturn(Optional.empty());
+        given(addressRepository.deleteByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID)).willReturn(0);
 
         //then
         Assertions.assertThrows(ObjectNotFound.class, () -> addressService.deleteAddress(TEST_ADDRESS_ID, TEST_PERSON_ID));
-        verify(addressRepository, times(1)).findAllByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID);
+        verify(addressRepository, times(1)).deleteByIdAndPersonId(TEST_ADDRESS_ID, TEST_PERSON_ID);
+        verify(secondLevelCache, times(0)).evictEntityData(any(Class.class), any());
+        verify(reportAggregates, times(0)).change(any(), any());
     }
-}
\ No newline at end of file
+}
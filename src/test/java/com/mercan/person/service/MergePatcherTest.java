@@ -0,0 +1,87 @@
+package com.mercan.person.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercan.person.entity.Person;
+import com.mercan.person.exception.InvalidRequest;
+import com.mercan.person.validation.RequestValidator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.validation.Validation;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.mercan.helper.TestHelper.createTestPerson;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+class MergePatcherTest {
+
+    private static final String TEST_FIRST_NAME = "test-first-name";
+    private static final String TEST_LAST_NAME = "test-last-name";
+    private static final Set<String> PATCHABLE = new HashSet<>(Arrays.asList("firstName", "lastName"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MergePatcher mergePatcher;
+
+    @BeforeEach
+    public void setup() {
+        mergePatcher = new MergePatcher(objectMapper, new RequestValidator(Validation.buildDefaultValidatorFactory().getValidator()));
+    }
+
+    @Test
+    public void apply_patch_expect_only_present_members_changed() throws Exception {
+
+        //given
+        Person person = createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME);
+
+        //when
+        mergePatcher.apply(person, objectMapper.readTree("{\"firstName\":\"patched\"}"), PATCHABLE);
+
+        //then
+        assertThat(person.getFirstName(), is("patched"));
+        assertThat(person.getLastName(), is(TEST_LAST_NAME));
+    }
+
+    @Test
+    public void apply_patch_with_null_mandatory_member_expect_validation_error() {
+
+        //given
+        Person person = createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME);
+
+        //when
+        InvalidRequest invalidRequest = Assertions.assertThrows(InvalidRequest.class,
+                () -> mergePatcher.apply(person, objectMapper.readTree("{\"lastName\":null}"), PATCHABLE));
+
+        //then
+        assertThat(invalidRequest.getErrors(), contains("lastName: is mandatory"));
+    }
+
+    @Test
+    public void apply_patch_with_unpatchable_members_expect_exception() {
+
+        //given
+        Person person = createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME);
+
+        //when
+        InvalidRequest invalidRequest = Assertions.assertThrows(InvalidRequest.class,
+                () -> mergePatcher.apply(person, objectMapper.readTree("{\"id\":5,\"address\":[]}"), PATCHABLE));
+
+        //then
+        assertThat(invalidRequest.getErrors(), contains("id: cannot be patched", "address: cannot be patched"));
+        assertThat(person.getId() == null, is(true));
+    }
+
+    @Test
+    public void apply_patch_that_is_not_an_object_expect_exception() {
+
+        //given
+        Person person = createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME);
+
+        //then
+        Assertions.assertThrows(InvalidRequest.class, () -> mergePatcher.apply(person, objectMapper.readTree("[]"), PATCHABLE));
+    }
+}
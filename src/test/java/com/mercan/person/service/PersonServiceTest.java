@@ -1,8 +1,23 @@
 package com.mercan.person.service;
 
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mercan.person.entity.Address;
 import com.mercan.person.entity.Person;
+import com.mercan.person.exception.InvalidRequest;
 import com.mercan.person.exception.ObjectNotFound;
+import com.mercan.person.exception.PreconditionFailed;
+import com.mercan.person.pojo.BulkCreateResult;
+import com.mercan.person.pojo.CursorPage;
+import com.mercan.person.pojo.Keyset;
+import com.mercan.person.pojo.NameMatch;
+import com.mercan.person.pojo.NameMatchMode;
+import com.mercan.person.pojo.PersonLookup;
+import com.mercan.person.pojo.PersonSearch;
+import com.mercan.person.pojo.PersonSort;
 import com.mercan.person.repository.PersonRepository;
+import com.mercan.person.util.Cursors;
+import com.mercan.person.validation.RequestValidator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -10,13 +25,38 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import static com.mercan.helper.TestHelper.createTestAddress;
 import static com.mercan.helper.TestHelper.createTestPerson;
+import static com.mercan.person.constants.PersonServiceConstants.EXPORT_CHUNK_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.MAX_PAGE_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.NAME_SEARCH_DEFAULT_LIMIT;
+import static com.mercan.person.constants.PersonServiceConstants.NAME_SEARCH_MAX_LIMIT;
+import static com.mercan.person.constants.PersonServiceConstants.PAGE_CHUNK_SIZE;
+import static com.mercan.person.constants.PersonServiceConstants.PERSON_CACHE;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +70,33 @@ class PersonServiceTest {
     @Mock
     PersonRepository personRepository;
 
+    @Mock
+    EntityManager entityManager;
+
+    @Mock
+    PersonCountTracker personCountTracker;
+
+    @Mock
+    RequestValidator requestValidator;
+
+    @Mock
+    TransactionTemplate transactionTemplate;
+
+    @Mock
+    CacheManager cacheManager;
+
+    @Mock
+    Cache cache;
+
+    @Mock
+    MergePatcher mergePatcher;
+
+    @Mock
+    PersonNameIndex personNameIndex;
+
+    @Mock
+    ReportAggregates reportAggregates;
+
     @InjectMocks
     PersonService personService;
 
@@ -50,22 +117,174 @@ class PersonServiceTest {
         //then
         assertThat(storedPerson, is(storedPerson));
         verify(personRepository, times(1)).save(storedPerson);
+        verify(personCountTracker, times(1)).add(1);
+
+    }
+
+    @Test
+    public void get_people_expect_next_cursor_when_more_rows_exist() {
+
+        //given
+        Person first = new Person(1L, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        Person second = new Person(2L, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        Person third = new Person(3L, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        given(personRepository.findIdsByIdGreaterThan(eq(0L), any())).willReturn(Arrays.asList(1L, 2L, 3L));
+        given(personRepository.findDistinctByIdInOrderByIdAsc(Arrays.asList(1L, 2L, 3L))).willReturn(Arrays.asList(first, second, third));
+
+        //when
+        CursorPage<Person> page = personService.getPeople(null, 2);
+
+        //then
+        assertThat(page.getItems(), is(Arrays.asList(first, second)));
+        assertThat(page.getNextCursor(), is(Cursors.encode(2L)));
+    }
+
+    @Test
+    public void get_people_expect_no_cursor_on_last_page() {
+
+        //given
+        Person third = new Person(3L, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        given(personRepository.findIdsByIdGreaterThan(eq(2L), any())).willReturn(Arrays.asList(3L));
+        given(personRepository.findDistinctByIdInOrderByIdAsc(Arrays.asList(3L))).willReturn(Arrays.asList(third));
+
+        //when
+        CursorPage<Person> page = personService.getPeople(Cursors.encode(2L), 2);
+
+        //then
+        assertThat(page.getItems(), is(Arrays.asList(third)));
+        assertThat(page.getNextCursor(), is(nullValue()));
+    }
+
+    @Test
+    public void get_people_expect_exception_for_invalid_cursor_or_limit() {
+        Assertions.assertThrows(InvalidRequest.class, () -> personService.getPeople("not-a-cursor", 10));
+        Assertions.assertThrows(InvalidRequest.class, () -> personService.getPeople(null, 0));
+        verify(personRepository, times(0)).findIdsByIdGreaterThan(any(), any());
+    }
+
+    @Test
+    public void search_people_expect_search_order_and_keyset_cursor() {
+
+        //given
+        PersonSearch search = PersonSearch.builder().lastName("test").sort(PersonSort.LAST_NAME).build();
+        Person first = new Person(3L, TEST_FIRST_NAME, "test-a", null);
+        Person second = new Person(1L, TEST_FIRST_NAME, "test-b", null);
+        given(personRepository.searchIds(search, null, 3)).willReturn(Arrays.asList(3L, 1L, 2L));
+        given(personRepository.findDistinctByIdInOrderByIdAsc(Arrays.asList(3L, 1L))).willReturn(Arrays.asList(second, first));
+
+        //when
+        CursorPage<Person> page = personService.searchPeople(search, null, 2);
+
+        //then
+        assertThat(page.getItems(), is(Arrays.asList(first, second)));
+        assertThat(Cursors.decodeKeyset(page.getNextCursor()), is(Keyset.builder().sort(PersonSort.LAST_NAME).id(1L).value("test-b").build()));
+    }
+
+    @Test
+    public void search_people_expect_no_cursor_on_last_page() {
+
+        //given
+        PersonSearch search = PersonSearch.builder().city("city").build();
+        Keyset after = Keyset.builder().sort(PersonSort.ID).id(2L).build();
+        Person third = new Person(3L, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        given(personRepository.searchIds(search, after, 3)).willReturn(Collections.singletonList(3L));
+        given(personRepository.findDistinctByIdInOrderByIdAsc(Collections.singletonList(3L))).willReturn(Collections.singletonList(third));
+
+        //when
+        CursorPage<Person> page = personService.searchPeople(search, Cursors.encode(after), 2);
+
+        //then
+        assertThat(page.getItems(), is(Collections.singletonList(third)));
+        assertThat(page.getNextCursor(), is(nullValue()));
+    }
+
+    @Test
+    public void search_people_expect_exception_for_cursor_of_other_sort() {
+        PersonSearch search = PersonSearch.builder().sort(PersonSort.FIRST_NAME).build();
+        String lastNameCursor = Cursors.encode(Keyset.builder().sort(PersonSort.LAST_NAME).id(2L).value("test").build());
+        InvalidRequest exception = Assertions.assertThrows(InvalidRequest.class, () -> personService.searchPeople(search, lastNameCursor, 10));
+        assertThat(exception.getErrors(), is(Collections.singletonList("after: is a cursor of a search sorted by lastName")));
+        Assertions.assertThrows(InvalidRequest.class, () -> personService.searchPeople(search, Cursors.encode(2L), 10));
+        verify(personRepository, times(0)).searchIds(any(), any(), anyInt());
+    }
+
+    @Test
+    public void export_people_expect_all_chunks_in_id_order() {
+
+        //given
+        List<Long> firstIds = new ArrayList<>();
+        List<Person> firstChunk = new ArrayList<>();
+        for (long id = 1; id <= EXPORT_CHUNK_SIZE; id++) {
+            firstIds.add(id);
+            firstChunk.add(new Person(id, TEST_FIRST_NAME, TEST_LAST_NAME, null));
+        }
+        Person last = new Person(EXPORT_CHUNK_SIZE + 1L, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        given(personRepository.findIdsByIdGreaterThan(eq(0L), any())).willReturn(firstIds);
+        given(personRepository.findDistinctByIdInOrderByIdAsc(firstIds)).willReturn(firstChunk);
+        given(personRepository.findIdsByIdGreaterThan(eq((long) EXPORT_CHUNK_SIZE), any())).willReturn(Collections.singletonList(last.getId()));
+        given(personRepository.findDistinctByIdInOrderByIdAsc(Collections.singletonList(last.getId()))).willReturn(Collections.singletonList(last));
+
+        //when
+        List<Person> exported = new ArrayList<>();
+        personService.exportPeople(null, exported::add);
+
+        //then
+        assertThat(exported.size(), is(EXPORT_CHUNK_SIZE + 1));
+        assertThat(exported.get(EXPORT_CHUNK_SIZE), is(last));
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    public void create_people_expect_chunked_save() {
+
+        //given
+        Person first = createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME);
+        Person second = createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME);
+        List<Person> people = Arrays.asList(first, second);
+        given(transactionTemplate.execute(any())).willAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        given(personRepository.saveAll(people)).willReturn(Arrays.asList(
+                new Person(1L, TEST_FIRST_NAME, TEST_LAST_NAME, null),
+                new Person(2L, TEST_FIRST_NAME, TEST_LAST_NAME, null)));
+
+        //when
+        BulkCreateResult result = personService.createPeople(people);
+
+        //then
+        assertThat(result.getCreated(), is(2));
+        assertThat(result.getIds(), is(Arrays.asList(1L, 2L)));
+        verify(entityManager, times(1)).flush();
+        verify(personCountTracker, times(1)).add(2);
+    }
 
+    @Test
+    public void create_people_expect_exception_when_an_item_is_invalid() {
+
+        //given
+        Person valid = createTestPerson(TEST_FIRST_NAME, TEST_LAST_NAME);
+        Person invalid = createTestPerson(null, TEST_LAST_NAME);
+        given(requestValidator.validate(anyString(), any())).willAnswer(invocation -> invocation.getArgument(1) == invalid
+                ? Collections.singletonList("[1].firstName: is mandatory")
+                : Collections.emptyList());
+
+        //then
+        InvalidRequest invalidRequest = Assertions.assertThrows(InvalidRequest.class, () -> personService.createPeople(Arrays.asList(valid, invalid)));
+        assertThat(invalidRequest.getErrors(), is(Collections.singletonList("[1].firstName: is mandatory")));
+        verify(personRepository, times(0)).saveAll(any());
     }
 
     @Test
     public void update_person_expect_success() {
 
         //given
-        given(personRepository.findById(TEST_ID)).willReturn(Optional.of(person));
-        given(personRepository.save(person)).willReturn(person);
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(person));
+        given(personRepository.saveAndFlush(person)).willReturn(person);
 
         //when
-        Person storedPerson = personService.updatePerson(TEST_ID, person);
+        Person storedPerson = personService.updatePerson(TEST_ID, person, null);
 
         //then
         assertThat(storedPerson, is(person));
-        verify(personRepository, times(1)).save(person);
+        verify(personRepository, times(1)).saveAndFlush(person);
     }
 
 
@@ -73,21 +292,206 @@ class PersonServiceTest {
     public void update_person_expect_exception_when_person_does_not_exist() {
 
         //given
-        given(personRepository.findById(TEST_ID)).willReturn(Optional.empty());
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.empty());
+
+
+        //then
+        Assertions.assertThrows(ObjectNotFound.class, () -> personService.updatePerson(TEST_ID, person, null));
+        verify(personRepository, times(1)).findWithAddressById(TEST_ID);
+        verify(personRepository, times(0)).saveAndFlush(person);
+
+    }
+
+    @Test
+    public void update_person_with_stale_version_expect_precondition_failed() {
+
+        //given
+        Person stored = new Person(TEST_ID, TEST_FIRST_NAME, TEST_LAST_NAME, null, 2L);
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(stored));
+
+        //then
+        Assertions.assertThrows(PreconditionFailed.class, () -> personService.updatePerson(TEST_ID, person, 1L));
+        verify(personRepository, times(0)).saveAndFlush(any());
+    }
+
+    @Test
+    public void update_person_without_addresses_expect_stored_addresses_untouched() {
+
+        //given
+        Address home = storedAddress(10L, "street");
+        Person stored = storedPerson(home);
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(stored));
+
+        //when
+        personService.updatePerson(TEST_ID, person, null);
+
+        //then
+        assertThat(stored.getAddress(), is(Collections.singleton(home)));
+        verify(entityManager, times(0)).lock(any(), any());
+    }
+
+    @Test
+    public void replace_addresses_expect_only_changes_applied() {
+
+        //given
+        Address unchanged = storedAddress(10L, "unchanged-street");
+        Address renamed = storedAddress(11L, "old-street");
+        Address removed = storedAddress(12L, "removed-street");
+        Set<Address> addresses = new HashSet<>(Arrays.asList(unchanged, renamed, removed));
+        Person stored = new Person(TEST_ID, TEST_FIRST_NAME, TEST_LAST_NAME, addresses, 2L);
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(stored));
+        Address added = createTestAddress("city", "postal-code", "state", "new-street");
+
+        //when
+        List<Address> replaced = personService.replaceAddresses(TEST_ID, Arrays.asList(
+                createTestAddress("city", "postal-code", "state", "unchanged-street"),
+                new Address(11L, "new-street-name", "city", "state", "postal-code", null),
+                added), 2L);
+
+        //then
+        assertThat(replaced.size(), is(3));
+        assertThat(stored.getAddress().containsAll(Arrays.asList(unchanged, renamed)), is(true));
+        assertThat(unchanged.getStreet(), is("unchanged-street"));
+        assertThat(renamed.getStreet(), is("new-street-name"));
+        // a copy of the requested address is inserted, the request's own object is left untouched
+        Address inserted = stored.getAddress().stream().filter(address -> address.getId() == null).findFirst().get();
+        assertThat(inserted == added, is(false));
+        assertThat(inserted.getStreet(), is("new-street"));
+        assertThat(inserted.getPerson(), is(stored));
+        assertThat(added.getPerson(), is(nullValue()));
+        verify(entityManager, times(1)).lock(stored, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        verify(personRepository, times(1)).saveAndFlush(stored);
+    }
+
+    @Test
+    public void replace_addresses_with_natural_key_before_id_of_same_address_expect_id_matched_first() {
+
+        //given
+        Address home = storedAddress(10L, "street");
+        Person stored = storedPerson(home);
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(stored));
+
+        //when
+        List<Address> replaced = personService.replaceAddresses(TEST_ID, Arrays.asList(
+                createTestAddress("city", "postal-code", "state", "street"),
+                new Address(10L, "moved-street", "city", "state", "postal-code", null)), null);
+
+        //then
+        assertThat(home.getStreet(), is("moved-street"));
+        assertThat(replaced.size(), is(2));
+        assertThat(stored.getAddress().contains(home), is(true));
+        verify(entityManager, times(1)).lock(stored, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+    }
+
+    @Test
+    public void replace_addresses_with_same_addresses_expect_no_change() {
+
+        //given
+        Address home = storedAddress(10L, "street");
+        Person stored = storedPerson(home);
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(stored));
+
+        //when
+        personService.replaceAddresses(TEST_ID, Collections.singletonList(createTestAddress("city", "postal-code", "state", "street")), null);
+
+        //then
+        assertThat(stored.getAddress(), is(Collections.singleton(home)));
+        verify(entityManager, times(0)).lock(any(), any());
+    }
+
+    @Test
+    public void replace_addresses_with_foreign_address_id_expect_exception() {
+
+        //given
+        Person stored = storedPerson(storedAddress(10L, "street"));
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(stored));
+
+        //then
+        Assertions.assertThrows(ObjectNotFound.class, () -> personService.replaceAddresses(TEST_ID,
+                Collections.singletonList(new Address(99L, "street", "city", "state", "postal-code", null)), null));
+        verify(personRepository, times(0)).saveAndFlush(any());
+    }
+
+    @Test
+    public void replace_addresses_with_invalid_address_expect_exception() {
+
+        //given
+        Person stored = storedPerson(storedAddress(10L, "street"));
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(stored));
+        given(requestValidator.validate(eq("[0]"), any())).willReturn(Collections.singletonList("[0].street: is mandatory"));
+
+        //then
+        InvalidRequest invalidRequest = Assertions.assertThrows(InvalidRequest.class, () -> personService.replaceAddresses(TEST_ID,
+                Collections.singletonList(createTestAddress("city", "postal-code", "state", null)), null));
+        assertThat(invalidRequest.getErrors(), is(Collections.singletonList("[0].street: is mandatory")));
+        assertThat(stored.getAddress().size(), is(1));
+    }
+
+    @Test
+    public void patch_person_expect_patch_applied_to_stored_person() {
+
+        //given
+        Person stored = new Person(TEST_ID, TEST_FIRST_NAME, TEST_LAST_NAME, null, 2L);
+        ObjectNode patch = JsonNodeFactory.instance.objectNode().put("firstName", "patched");
+        given(personRepository.findById(TEST_ID)).willReturn(Optional.of(stored));
+        given(personRepository.saveAndFlush(stored)).willReturn(stored);
 
+        //when
+        Person patched = personService.patchPerson(TEST_ID, patch, 2L);
 
         //then
-        Assertions.assertThrows(ObjectNotFound.class, () -> personService.updatePerson(TEST_ID, person));
-        verify(personRepository, times(1)).findById(TEST_ID);
-        verify(personRepository, times(0)).save(person);
+        assertThat(patched, is(stored));
+        verify(mergePatcher, times(1)).apply(eq(stored), eq(patch), any());
+        verify(personRepository, times(1)).saveAndFlush(stored);
+    }
+
+    @Test
+    public void patch_person_with_stale_version_expect_precondition_failed() {
+
+        //given
+        Person stored = new Person(TEST_ID, TEST_FIRST_NAME, TEST_LAST_NAME, null, 2L);
+        given(personRepository.findById(TEST_ID)).willReturn(Optional.of(stored));
+
+        //then
+        Assertions.assertThrows(PreconditionFailed.class, () -> personService.patchPerson(TEST_ID, JsonNodeFactory.instance.objectNode(), 1L));
+        verify(mergePatcher, times(0)).apply(any(), any(), any());
+    }
+
+    @Test
+    public void update_person_with_retry_expect_reapplied_after_conflict() {
+
+        //given
+        given(transactionTemplate.execute(any()))
+                .willThrow(new ObjectOptimisticLockingFailureException(Person.class, TEST_ID))
+                .willAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(person));
+        given(personRepository.saveAndFlush(person)).willReturn(person);
+
+        //when
+        Person storedPerson = personService.updatePersonWithRetry(TEST_ID, person, 3);
+
+        //then
+        assertThat(storedPerson, is(person));
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(entityManager, times(1)).clear();
+    }
+
+    @Test
+    public void update_person_with_retry_expect_exception_after_max_attempts() {
+
+        //given
+        given(transactionTemplate.execute(any())).willThrow(new ObjectOptimisticLockingFailureException(Person.class, TEST_ID));
 
+        //then
+        Assertions.assertThrows(ObjectOptimisticLockingFailureException.class, () -> personService.updatePersonWithRetry(TEST_ID, person, 3));
+        verify(transactionTemplate, times(3)).execute(any());
     }
 
     @Test
     public void delete_person_expect_success() {
 
         //given
-        given(personRepository.findById(TEST_ID)).willReturn(Optional.of(person));
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(person));
         doNothing().when(personRepository).delete(person);
 
         //when
@@ -95,13 +499,200 @@ class PersonServiceTest {
 
         //then
         verify(personRepository, times(1)).delete(person);
+        verify(personCountTracker, times(1)).add(-1);
+
+    }
+
+    @Test
+    public void create_and_delete_person_expect_name_index_updated() {
+
+        //given
+        Person stored = new Person(TEST_ID, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        given(personRepository.save(stored)).willReturn(stored);
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(stored));
+
+        //when
+        personService.createPerson(stored);
+        personService.delete(TEST_ID);
+
+        //then
+        verify(personNameIndex, times(1)).put(stored);
+        verify(personNameIndex, times(1)).remove(TEST_ID);
+    }
+
+    @Test
+    public void create_and_delete_person_expect_report_aggregates_changed() {
+
+        //given
+        Person stored = new Person(TEST_ID, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        given(personRepository.save(stored)).willReturn(stored);
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.of(stored));
+
+        //when
+        personService.createPerson(stored);
+        personService.delete(TEST_ID);
+
+        //then
+        verify(reportAggregates, times(1)).change(eq(ReportAggregates.Footprint.NONE), any());
+        verify(reportAggregates, times(1)).change(any(), eq(ReportAggregates.Footprint.NONE));
+    }
+
+    @Test
+    public void search_names_expect_default_and_capped_limit() {
+
+        //given
+        List<NameMatch> matches = Collections.singletonList(NameMatch.builder().id(TEST_ID).build());
+        given(personNameIndex.search("jon", NameMatchMode.PHONETIC, NAME_SEARCH_DEFAULT_LIMIT)).willReturn(matches);
+
+        //when
+        List<NameMatch> found = personService.searchNames("jon", NameMatchMode.PHONETIC, null);
+        personService.searchNames("jon", NameMatchMode.TRIGRAM, 100000);
+
+        //then
+        assertThat(found, is(matches));
+        verify(personNameIndex, times(1)).search("jon", NameMatchMode.TRIGRAM, NAME_SEARCH_MAX_LIMIT);
+    }
+
+    @Test
+    public void search_names_expect_exception_for_blank_query_or_invalid_limit() {
+        Assertions.assertThrows(InvalidRequest.class, () -> personService.searchNames(" ", NameMatchMode.TRIGRAM, null));
+        Assertions.assertThrows(InvalidRequest.class, () -> personService.searchNames("jon", NameMatchMode.TRIGRAM, 0));
+        verify(personNameIndex, times(0)).search(any(), any(), anyInt());
+    }
+
+    @Test
+    public void get_person_count_expect_tracked_value_without_query() {
+
+        //given
+        given(personCountTracker.get()).willReturn(42L);
+
+        //when
+        long count = personService.getPersonCount(false);
+
+        //then
+        assertThat(count, is(42L));
+        verify(personCountTracker, times(0)).recount();
+        verify(personRepository, times(0)).count();
+    }
+
+    @Test
+    public void get_person_count_exact_expect_recount() {
+
+        //given
+        given(personCountTracker.recount()).willReturn(43L);
+
+        //when
+        long count = personService.getPersonCount(true);
+
+        //then
+        assertThat(count, is(43L));
+        verify(personCountTracker, times(1)).recount();
+    }
+
+    @Test
+    public void lookup_people_expect_cached_and_loaded_in_request_order_and_missing_reported() {
+
+        //given
+        Person cached = new Person(3L, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        Person first = new Person(1L, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        Person second = new Person(2L, TEST_FIRST_NAME, TEST_LAST_NAME, null);
+        given(cacheManager.getCache(PERSON_CACHE)).willReturn(cache);
+        given(cache.get(any(), eq(Person.class))).willAnswer(invocation -> cached.getId().equals(invocation.getArgument(0)) ? cached : null);
+        given(personRepository.findDistinctByIdInOrderByIdAsc(Arrays.asList(2L, 9L, 1L))).willReturn(Arrays.asList(first, second));
+
+        //when
+        PersonLookup lookup = personService.lookupPeople(Arrays.asList(2L, 3L, 9L, 2L, 1L));
+
+        //then
+        assertThat(lookup.getPeople(), is(Arrays.asList(second, cached, first)));
+        assertThat(lookup.getMissing(), is(Collections.singletonList(9L)));
+        verify(personRepository, times(1)).findDistinctByIdInOrderByIdAsc(any());
+        verify(cache, times(1)).put(1L, first);
+        verify(cache, times(1)).put(2L, second);
+    }
+
+    @Test
+    public void lookup_people_expect_one_query_per_chunk() {
+
+        //given
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= PAGE_CHUNK_SIZE + 1; id++) {
+            ids.add(id);
+        }
+        given(cacheManager.getCache(PERSON_CACHE)).willReturn(cache);
+        given(personRepository.findDistinctByIdInOrderByIdAsc(any())).willReturn(Collections.emptyList());
+
+        //when
+        PersonLookup lookup = personService.lookupPeople(ids);
+
+        //then
+        assertThat(lookup.getMissing(), is(ids));
+        verify(personRepository, times(1)).findDistinctByIdInOrderByIdAsc(ids.subList(0, PAGE_CHUNK_SIZE));
+        verify(personRepository, times(1)).findDistinctByIdInOrderByIdAsc(ids.subList(PAGE_CHUNK_SIZE, PAGE_CHUNK_SIZE + 1));
+    }
+
+    @Test
+    public void lookup_people_expect_exception_for_empty_or_oversized_ids() {
+
+        //given
+        List<Long> oversized = new ArrayList<>();
+        for (long id = 0; id <= MAX_PAGE_SIZE; id++) {
+            oversized.add(id);
+        }
+
+        //then
+        Assertions.assertThrows(InvalidRequest.class, () -> personService.lookupPeople(null));
+        Assertions.assertThrows(InvalidRequest.class, () -> personService.lookupPeople(Collections.emptyList()));
+        Assertions.assertThrows(InvalidRequest.class, () -> personService.lookupPeople(Arrays.asList(1L, null)));
+        Assertions.assertThrows(InvalidRequest.class, () -> personService.lookupPeople(oversized));
+        verify(personRepository, times(0)).findDistinctByIdInOrderByIdAsc(any());
+    }
 
+    @Test
+    public void get_person_version_expect_cached_person_without_query() {
+
+        //given
+        Person cached = new Person(TEST_ID, TEST_FIRST_NAME, TEST_LAST_NAME, null, 4L);
+        given(cacheManager.getCache(PERSON_CACHE)).willReturn(cache);
+        given(cache.get(TEST_ID, Person.class)).willReturn(cached);
+
+        //when
+        Long version = personService.getPersonVersion(TEST_ID);
+
+        //then
+        assertThat(version, is(4L));
+        verify(personRepository, times(0)).findVersionById(TEST_ID);
+    }
+
+    @Test
+    public void get_person_version_expect_lookup_when_not_cached() {
+
+        //given
+        given(cacheManager.getCache(PERSON_CACHE)).willReturn(cache);
+        given(personRepository.findVersionById(TEST_ID)).willReturn(Optional.of(5L));
+
+        //when
+        Long version = personService.getPersonVersion(TEST_ID);
+
+        //then
+        assertThat(version, is(5L));
+    }
+
+    @Test
+    public void get_person_version_expect_exception_when_person_does_not_exist() {
+
+        //given
+        given(cacheManager.getCache(PERSON_CACHE)).willReturn(cache);
+        given(personRepository.findVersionById(TEST_ID)).willReturn(Optional.empty());
+
+        //then
+        Assertions.assertThrows(ObjectNotFound.class, () -> personService.getPersonVersion(TEST_ID));
     }
 
 
     public void delete_person_expect_exception() {
         //given
-        given(personRepository.findById(TEST_ID)).willReturn(Optional.empty());
+        given(personRepository.findWithAddressById(TEST_ID)).willReturn(Optional.empty());
 
         //then
         Assertions.assertThrows(ObjectNotFound.class, () -> personService.delete(TEST_ID));
@@ -109,4 +700,11 @@ class PersonServiceTest {
 
     }
 
-}
\ No newline at end of file
+    private static Person storedPerson(Address... addresses) {
+        return new Person(TEST_ID, TEST_FIRST_NAME, TEST_LAST_NAME, new HashSet<>(Arrays.asList(addresses)), 2L);
+    }
+
+    private static Address storedAddress(Long id, String street) {
+        return new Address(id, street, "city", "state", "postal-code", null, 0L);
+    }
+}
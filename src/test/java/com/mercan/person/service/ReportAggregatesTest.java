@@ -0,0 +1,167 @@
+package com.mercan.person.service;
+
+import com.mercan.person.entity.Address;
+import com.mercan.person.pojo.AddressCountBucket;
+import com.mercan.person.pojo.LocationCount;
+import com.mercan.person.repository.AddressRepository;
+import com.mercan.person.repository.AddressRepository.AddressCountTally;
+import com.mercan.person.repository.AddressRepository.LocationTally;
+import com.mercan.person.service.ReportAggregates.Footprint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.mercan.helper.TestHelper.createTestAddress;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ReportAggregatesTest {
+
+    @Mock
+    AddressRepository addressRepository;
+
+    @InjectMocks
+    ReportAggregates reportAggregates;
+
+    @Test
+    public void change_for_created_person_expect_person_counted_once_per_state_and_city() {
+
+        //when
+        reportAggregates.change(Footprint.NONE, Footprint.of(Arrays.asList(
+                address("CA", "Fresno"), address("CA", "Fresno"), address("CA", "Irvine"), address("NY", "Albany"))));
+
+        //then
+        assertThat(states(reportAggregates.getPeopleByState(false)), contains("CA=1", "NY=1"));
+        assertThat(cities(reportAggregates.getPeopleByCity(null, false)), contains("CA/Fresno=1", "CA/Irvine=1", "NY/Albany=1"));
+        assertThat(buckets(reportAggregates.getAddressDistribution(false)), contains("4=1"));
+    }
+
+    @Test
+    public void change_for_moved_and_deleted_people_expect_emptied_groups_dropped() {
+
+        //given
+        Footprint first = Footprint.of(Collections.singletonList(address("CA", "Fresno")));
+        Footprint second = Footprint.of(Collections.singletonList(address("CA", "Irvine")));
+        reportAggregates.change(Footprint.NONE, first);
+        reportAggregates.change(Footprint.NONE, second);
+
+        //when
+        Footprint moved = Footprint.of(Arrays.asList(address("CA", "Fresno"), address("TX", "Austin")));
+        reportAggregates.change(second, moved);
+        reportAggregates.change(first, Footprint.NONE);
+
+        //then
+        assertThat(states(reportAggregates.getPeopleByState(false)), contains("CA=1", "TX=1"));
+        assertThat(cities(reportAggregates.getPeopleByCity(null, false)), contains("CA/Fresno=1", "TX/Austin=1"));
+        assertThat(buckets(reportAggregates.getAddressDistribution(false)), contains("2=1"));
+    }
+
+    @Test
+    public void change_for_deleted_person_never_counted_expect_no_negative_groups() {
+
+        //given
+        Footprint uncounted = Footprint.of(Collections.singletonList(address("CA", "Fresno")));
+
+        //when
+        reportAggregates.change(uncounted, Footprint.NONE);
+        reportAggregates.change(Footprint.NONE, Footprint.of(Collections.singletonList(address("CA", "Irvine"))));
+
+        //then
+        assertThat(states(reportAggregates.getPeopleByState(false)), contains("CA=1"));
+        assertThat(cities(reportAggregates.getPeopleByCity(null, false)), contains("CA/Irvine=1"));
+        assertThat(buckets(reportAggregates.getAddressDistribution(false)), contains("1=1"));
+    }
+
+    @Test
+    public void get_people_by_city_for_state_expect_only_cities_of_that_state() {
+
+        //given
+        reportAggregates.change(Footprint.NONE, Footprint.of(Arrays.asList(
+                address("CA", "Irvine"), address("CAN", "Toronto"), address("C", "Zeta"))));
+
+        //then
+        assertThat(cities(reportAggregates.getPeopleByCity("CA", false)), contains("CA/Irvine=1"));
+        assertThat(reportAggregates.getPeopleByCity("WA", false), is(empty()));
+    }
+
+    @Test
+    public void get_exact_expect_aggregates_replaced_by_database_counts() {
+
+        //given
+        reportAggregates.change(Footprint.NONE, Footprint.of(Collections.singletonList(address("CA", "Fresno"))));
+        given(addressRepository.countPeopleByState()).willReturn(Collections.singletonList(tally("NY", null, 3L)));
+        given(addressRepository.countPeopleByCity()).willReturn(Collections.singletonList(tally("NY", "Albany", 3L)));
+        given(addressRepository.countPeopleByAddressCount()).willReturn(Arrays.asList(bucket(0L, 2L), bucket(1L, 3L)));
+
+        //when
+        List<LocationCount> states = reportAggregates.getPeopleByState(true);
+
+        //then
+        assertThat(states(states), contains("NY=3"));
+        assertThat(cities(reportAggregates.getPeopleByCity(null, false)), contains("NY/Albany=3"));
+        assertThat(buckets(reportAggregates.getAddressDistribution(false)), contains("0=2", "1=3"));
+        verify(addressRepository, times(1)).countPeopleByState();
+    }
+
+    private static Address address(String state, String city) {
+        return createTestAddress(city, "postal-code", state, "street");
+    }
+
+    private static LocationTally tally(String state, String city, Long people) {
+        return new LocationTally() {
+            @Override
+            public String getState() {
+                return state;
+            }
+
+            @Override
+            public String getCity() {
+                return city;
+            }
+
+            @Override
+            public Long getPeople() {
+                return people;
+            }
+        };
+    }
+
+    private static AddressCountTally bucket(Long addresses, Long people) {
+        return new AddressCountTally() {
+            @Override
+            public Long getAddresses() {
+                return addresses;
+            }
+
+            @Override
+            public Long getPeople() {
+                return people;
+            }
+        };
+    }
+
+    private static List<String> states(List<LocationCount> counts) {
+        return counts.stream().map(count -> count.getState() + "=" + count.getPeople()).collect(Collectors.toList());
+    }
+
+    private static List<String> cities(List<LocationCount> counts) {
+        return counts.stream().map(count -> count.getState() + "/" + count.getCity() + "=" + count.getPeople()).collect(Collectors.toList());
+    }
+
+    private static List<String> buckets(List<AddressCountBucket> buckets) {
+        return buckets.stream().map(bucket -> bucket.getAddresses() + "=" + bucket.getPeople()).collect(Collectors.toList());
+    }
+}